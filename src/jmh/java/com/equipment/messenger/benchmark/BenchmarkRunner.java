@@ -0,0 +1,26 @@
+package com.equipment.messenger.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * ベンチマークの実行（GCプロファイラを常に有効にし、スループットとあわせてアロケーション量を出力する）
+ * 引数はJMHのコマンドラインオプションと同じ（例: RowMappingBenchmark -p equipmentCount=3000）
+ *
+ * 実行例: java -cp target/EqpStatusMessenger-1.0.0-jar-with-dependencies.jar com.equipment.messenger.benchmark.BenchmarkRunner
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
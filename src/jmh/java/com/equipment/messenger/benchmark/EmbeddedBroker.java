@@ -0,0 +1,44 @@
+package com.equipment.messenger.benchmark;
+
+import org.apache.activemq.artemis.core.config.Configuration;
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+
+/**
+ * ベンチマーク用の組み込みActiveMQ Artemisブローカー（in-VM接続）
+ */
+public class EmbeddedBroker implements AutoCloseable {
+    public static final String IN_VM_URL = "vm://0";
+
+    private final EmbeddedActiveMQ server = new EmbeddedActiveMQ();
+
+    public EmbeddedBroker start() throws Exception {
+        Configuration configuration = new ConfigurationImpl()
+                .setPersistenceEnabled(false)
+                .setSecurityEnabled(false)
+                .setJournalDirectory("target/embedded-broker/journal")
+                .setBindingsDirectory("target/embedded-broker/bindings")
+                .setLargeMessagesDirectory("target/embedded-broker/large-messages")
+                .setPagingDirectory("target/embedded-broker/paging")
+                .addAcceptorConfiguration("in-vm", IN_VM_URL);
+        server.setConfiguration(configuration);
+        server.start();
+        return this;
+    }
+
+    /**
+     * in-VM接続のURL
+     */
+    public String url() {
+        return IN_VM_URL;
+    }
+
+    @Override
+    public void close() {
+        try {
+            server.stop();
+        } catch (Exception e) {
+            throw new IllegalStateException("組み込みブローカーの停止に失敗しました", e);
+        }
+    }
+}
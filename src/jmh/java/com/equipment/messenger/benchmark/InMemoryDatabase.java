@@ -0,0 +1,93 @@
+package com.equipment.messenger.benchmark;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+
+/**
+ * ベンチマーク用のインメモリDB（H2）
+ * EQUIPMENT_STATUS と RTI_TIMESTAMP を本番と同じ列構成で作成する
+ *
+ * DatabaseManagerから接続する場合は、db.url に {@link #url()}、db.username / db.password に
+ * {@link #USERNAME} / {@link #PASSWORD} を指定する
+ * （Oracle用の接続プロパティはH2では無視される）
+ */
+public class InMemoryDatabase implements AutoCloseable {
+
+    public static final String USERNAME = "sa";
+    public static final String PASSWORD = "";
+
+    public static final String[] STATES = {
+            "PRODUCTIVE", "STANDBY", "ENGINEERING", "SCHEDULED_DOWN", "UNSCHEDULED_DOWN", "NON_SCHEDULED"
+    };
+
+    static {
+        // jar-with-dependenciesではjava.sql.Driverのサービス定義がOracleのものだけになるため、明示的に登録する
+        org.h2.Driver.load();
+    }
+
+    private final String name;
+    // 最後の接続が閉じられてもDBを破棄しないよう、接続を1つ保持する
+    private final Connection keepAlive;
+
+    public InMemoryDatabase(String name) throws SQLException {
+        this.name = name;
+        this.keepAlive = DriverManager.getConnection(url(), USERNAME, PASSWORD);
+        try (Statement stmt = keepAlive.createStatement()) {
+            stmt.execute("CREATE TABLE RTI_TIMESTAMP (TIMESTAMPTIME TIMESTAMP NOT NULL, LASTEQPID VARCHAR(50), "
+                    + "UPDATETIME TIMESTAMP NOT NULL)");
+            stmt.execute("CREATE TABLE EQUIPMENT_STATUS (EQPID VARCHAR(50) NOT NULL PRIMARY KEY, "
+                    + "STATUS VARCHAR(20), TIMESTAMPTIME TIMESTAMP NOT NULL)");
+            stmt.execute("CREATE INDEX IDX_EQUIPMENT_STATUS_TS ON EQUIPMENT_STATUS (TIMESTAMPTIME)");
+        }
+    }
+
+    /**
+     * DatabaseManager（HikariCP）から接続するためのJDBC URL
+     */
+    public String url() {
+        return "jdbc:h2:mem:" + name + ";MODE=Oracle;DB_CLOSE_DELAY=-1;IGNORE_UNKNOWN_SETTINGS=TRUE";
+    }
+
+    public static String equipmentId(int index) {
+        return String.format("EQP%05d", index);
+    }
+
+    /**
+     * 装置ステータスを登録（equipmentCount台、TIMESTAMPTIMEは baseMillis から1ミリ秒ずつずらす）
+     */
+    public void loadEquipment(int equipmentCount, long baseMillis) throws SQLException {
+        String sql = "MERGE INTO EQUIPMENT_STATUS (EQPID, STATUS, TIMESTAMPTIME) KEY (EQPID) VALUES (?, ?, ?)";
+        try (PreparedStatement pstmt = keepAlive.prepareStatement(sql)) {
+            for (int i = 0; i < equipmentCount; i++) {
+                pstmt.setString(1, equipmentId(i));
+                pstmt.setString(2, STATES[i % STATES.length]);
+                pstmt.setTimestamp(3, new Timestamp(baseMillis + i));
+                pstmt.addBatch();
+                if (i % 1000 == 999) {
+                    pstmt.executeBatch();
+                }
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    /**
+     * 新しい接続を取得（負荷生成など、DatabaseManagerを経由せずに更新する場合に使用）
+     */
+    public Connection connect() throws SQLException {
+        return DriverManager.getConnection(url(), USERNAME, PASSWORD);
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try (Statement stmt = keepAlive.createStatement()) {
+            stmt.execute("SHUTDOWN");
+        } finally {
+            keepAlive.close();
+        }
+    }
+}
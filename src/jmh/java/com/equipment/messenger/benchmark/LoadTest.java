@@ -0,0 +1,245 @@
+package com.equipment.messenger.benchmark;
+
+import com.equipment.messenger.Config;
+import com.equipment.messenger.EqpStatusMessenger;
+import com.equipment.messenger.MessengerMetrics;
+import com.equipment.messenger.StatusMessageBuilder;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.activemq.artemis.jms.client.ActiveMQConnectionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.Session;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 負荷試験（ソークテスト）
+ * 組み込みブローカーとインメモリDB（H2）を起動し、M台の装置のステータスを毎秒N件ずつ更新しながら、
+ * 実際のEqpStatusMessengerのメインループを実行する。本番のOracleには接続しない
+ *
+ * 一定間隔ごとに、更新件数・受信件数、受信側で測定した更新→受信のレイテンシ、処理済みタイムスタンプの遅れ、
+ * ヒープ使用量、GC回数・時間を出力する。ramp.step を指定すると更新件数を段階的に増やし、
+ * 遅れが増え続ける（処理が追いつかなくなる）更新件数を確認できる
+ *
+ * 設定（システムプロパティ）:
+ *   loadtest.rate               毎秒の更新件数（デフォルト1000）
+ *   loadtest.equipment          装置数（デフォルト10000）
+ *   loadtest.duration.seconds   実行時間（デフォルト3600）
+ *   loadtest.report.seconds     出力間隔（デフォルト10）
+ *   loadtest.ramp.step          ramp.seconds ごとに増やす毎秒の更新件数（デフォルト0: 増やさない）
+ *   loadtest.ramp.seconds       更新件数を増やす間隔（デフォルト60）
+ * アプリケーションの設定（app.* / artemis.* など）も通常どおりシステムプロパティで指定できる
+ * （db.* と artemis.url / artemis.queue は負荷試験用の値で上書きする）
+ *
+ * 実行例:
+ *   java -Dloadtest.rate=5000 -Dapp.interval.seconds=1 -Xlog:gc:file=logs/loadtest-gc.log \
+ *        -cp target/EqpStatusMessenger-1.0.0-jar-with-dependencies.jar com.equipment.messenger.benchmark.LoadTest
+ */
+public class LoadTest {
+    private static final Logger logger = LoggerFactory.getLogger(LoadTest.class);
+
+    private static final String QUEUE = "LoadTest";
+    // 負荷生成の周期（ミリ秒）
+    private static final long TICK_MS = 10;
+
+    private final int equipmentCount;
+    private final long durationSeconds;
+    private final int reportSeconds;
+    private final int rampStep;
+    private final int rampSeconds;
+    private volatile int rate;
+
+    private final LongAdder generated = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final Recorder endToEnd = new Recorder(3);
+    private Histogram endToEndInterval;
+    private final Histogram endToEndTotal = new Histogram(3);
+
+    private long lastReportNanos = System.nanoTime();
+    private long lastGenerated;
+    private long lastReceived;
+    private long lastGcCount;
+    private long lastGcMillis;
+    private double carry;
+
+    public LoadTest() {
+        this.rate = Integer.getInteger("loadtest.rate", 1000);
+        this.equipmentCount = Integer.getInteger("loadtest.equipment", 10000);
+        this.durationSeconds = Long.getLong("loadtest.duration.seconds", 3600);
+        this.reportSeconds = Integer.getInteger("loadtest.report.seconds", 10);
+        this.rampStep = Integer.getInteger("loadtest.ramp.step", 0);
+        this.rampSeconds = Integer.getInteger("loadtest.ramp.seconds", 60);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new LoadTest().run();
+        System.exit(0);
+    }
+
+    public void run() throws Exception {
+        try (EmbeddedBroker broker = new EmbeddedBroker().start();
+             InMemoryDatabase database = new InMemoryDatabase("loadtest")) {
+            database.loadEquipment(equipmentCount, System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1));
+
+            System.setProperty("db.url", database.url());
+            System.setProperty("db.username", InMemoryDatabase.USERNAME);
+            System.setProperty("db.password", InMemoryDatabase.PASSWORD);
+            System.setProperty("artemis.url", broker.url());
+            System.setProperty("artemis.queue", QUEUE);
+            setDefault("app.interval.seconds", "1");
+            setDefault("mail.notification.enabled", "false");
+
+            ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+            try (ActiveMQConnectionFactory consumerFactory = new ActiveMQConnectionFactory(broker.url());
+                 javax.jms.Connection consumerConnection = consumerFactory.createConnection();
+                 Connection generatorConnection = database.connect();
+                 PreparedStatement update = generatorConnection.prepareStatement(
+                         "UPDATE EQUIPMENT_STATUS SET STATUS = ?, TIMESTAMPTIME = ? WHERE EQPID = ?")) {
+                startConsumer(consumerConnection);
+
+                EqpStatusMessenger messenger = new EqpStatusMessenger(new Config());
+                Thread messengerThread = new Thread(messenger::run, "messenger");
+                try {
+                    messenger.initialize();
+                    messengerThread.start();
+
+                    scheduler.scheduleAtFixedRate(() -> generate(generatorConnection, update), TICK_MS, TICK_MS,
+                            TimeUnit.MILLISECONDS);
+                    scheduler.scheduleAtFixedRate(() -> report(messenger.getMetrics()), reportSeconds, reportSeconds,
+                            TimeUnit.SECONDS);
+                    if (rampStep > 0) {
+                        scheduler.scheduleAtFixedRate(() -> {
+                            rate += rampStep;
+                            logger.info("更新件数を毎秒{}件に増やします", rate);
+                        }, rampSeconds, rampSeconds, TimeUnit.SECONDS);
+                    }
+
+                    logger.info("負荷試験を開始 - 装置数: {}, 更新件数: 毎秒{}件, 実行時間: {}秒", equipmentCount, rate,
+                            durationSeconds);
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(durationSeconds));
+
+                    // 更新を止めてから、送信中の装置ステータスの処理を待って停止する
+                    scheduler.shutdown();
+                    scheduler.awaitTermination(10, TimeUnit.SECONDS);
+                } finally {
+                    messenger.stop();
+                    messengerThread.join(TimeUnit.SECONDS.toMillis(30));
+                    messenger.shutdown();
+                }
+                report(messenger.getMetrics());
+
+                logger.info("===== 負荷試験終了 - 更新 {}件, 受信 {}件, 更新→受信 p50 {}ms / p99 {}ms / p999 {}ms / 最大 {}ms =====",
+                        generated.sum(), received.sum(),
+                        endToEndTotal.getValueAtPercentile(50), endToEndTotal.getValueAtPercentile(99),
+                        endToEndTotal.getValueAtPercentile(99.9), endToEndTotal.getMaxValue());
+            } finally {
+                scheduler.shutdownNow();
+            }
+        }
+    }
+
+    private static void setDefault(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+
+    /**
+     * 受信側（読み捨てて、EqpSourceTimeから更新→受信のレイテンシを記録）
+     */
+    private void startConsumer(javax.jms.Connection connection) throws JMSException {
+        Session session = connection.createSession(false, Session.DUPS_OK_ACKNOWLEDGE);
+        MessageConsumer consumer = session.createConsumer(session.createQueue(QUEUE));
+        consumer.setMessageListener((Message message) -> {
+            received.increment();
+            try {
+                if (message.propertyExists(StatusMessageBuilder.PROPERTY_SOURCE_TIME)) {
+                    long sourceTime = message.getLongProperty(StatusMessageBuilder.PROPERTY_SOURCE_TIME);
+                    endToEnd.recordValue(Math.max(0, System.currentTimeMillis() - sourceTime));
+                }
+            } catch (JMSException e) {
+                logger.debug("プロパティの取得に失敗しました: {}", e.getMessage());
+            }
+        });
+        connection.start();
+    }
+
+    /**
+     * TICK_MSごとに、毎秒の更新件数を按分した件数の装置ステータスを更新
+     */
+    private void generate(Connection connection, PreparedStatement update) {
+        carry += rate * TICK_MS / 1000.0;
+        int count = (int) carry;
+        carry -= count;
+        if (count == 0) {
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        try {
+            for (int i = 0; i < count; i++) {
+                update.setString(1, InMemoryDatabase.STATES[random.nextInt(InMemoryDatabase.STATES.length)]);
+                update.setTimestamp(2, now);
+                update.setString(3, InMemoryDatabase.equipmentId(random.nextInt(equipmentCount)));
+                update.addBatch();
+            }
+            update.executeBatch();
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+            generated.add(count);
+        } catch (SQLException e) {
+            logger.error("装置ステータスの更新に失敗しました", e);
+        }
+    }
+
+    /**
+     * 前回の出力以降の区間の状況を出力
+     */
+    private synchronized void report(MessengerMetrics metrics) {
+        long nowNanos = System.nanoTime();
+        double elapsedSeconds = Math.max(1e-3, (nowNanos - lastReportNanos) / 1e9);
+        long generatedNow = generated.sum();
+        long receivedNow = received.sum();
+        endToEndInterval = endToEnd.getIntervalHistogram(endToEndInterval);
+        endToEndTotal.add(endToEndInterval);
+
+        long gcCount = 0;
+        long gcMillis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += Math.max(0, gc.getCollectionCount());
+            gcMillis += Math.max(0, gc.getCollectionTime());
+        }
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+
+        logger.info("更新 {}件/秒, 受信 {}件/秒, 更新→受信 p50 {}ms / p99 {}ms / 最大 {}ms, 処理遅れ {}ms, "
+                        + "ヒープ {}MB / {}MB, GC {}回 ({}ms)",
+                Math.round((generatedNow - lastGenerated) / elapsedSeconds),
+                Math.round((receivedNow - lastReceived) / elapsedSeconds),
+                endToEndInterval.getValueAtPercentile(50), endToEndInterval.getValueAtPercentile(99),
+                endToEndInterval.getMaxValue(), metrics.getWatermarkLagMillis(),
+                heap.getUsed() / (1024 * 1024), heap.getMax() / (1024 * 1024),
+                gcCount - lastGcCount, gcMillis - lastGcMillis);
+
+        lastReportNanos = nowNanos;
+        lastGenerated = generatedNow;
+        lastReceived = receivedNow;
+        lastGcCount = gcCount;
+        lastGcMillis = gcMillis;
+    }
+}
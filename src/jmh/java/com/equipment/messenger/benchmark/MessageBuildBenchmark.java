@@ -0,0 +1,99 @@
+package com.equipment.messenger.benchmark;
+
+import com.equipment.messenger.EquipmentStatus;
+import com.equipment.messenger.StatusMessageBuilder;
+import org.apache.activemq.artemis.jms.client.ActiveMQConnectionFactory;
+import org.openjdk.jmh.annotations.*;
+
+import javax.jms.Connection;
+import javax.jms.JMSException;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * メッセージ作成のベンチマーク
+ * 従来の文字列連結 + メッセージごとのcreateQueue()と、StatusMessageBuilderのキャッシュ版を比較する
+ * cachedWithLatencyPropertiesはレイテンシ計測用のプロパティ（EqpSourceTime など）を付与した場合
+ *
+ * 実行例: java -cp target/EqpStatusMessenger-1.0.0-jar-with-dependencies.jar org.openjdk.jmh.Main MessageBuildBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageBuildBenchmark {
+
+    @Param({"3000"})
+    public int equipmentCount;
+
+    private static final String[] STATES = {"PRODUCTIVE", "STANDBY", "ENGINEERING", "SCHEDULED_DOWN", "UNSCHEDULED_DOWN", "NON_SCHEDULED"};
+
+    private EmbeddedBroker broker;
+    private ActiveMQConnectionFactory connectionFactory;
+    private Connection connection;
+    private Session session;
+    private StatusMessageBuilder builder;
+    private StatusMessageBuilder latencyBuilder;
+    private EquipmentStatus[] statuses;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        broker = new EmbeddedBroker().start();
+        connectionFactory = new ActiveMQConnectionFactory(EmbeddedBroker.IN_VM_URL);
+        connection = connectionFactory.createConnection();
+        session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        builder = new StatusMessageBuilder(equipmentCount * 2, false, null, null);
+        latencyBuilder = new StatusMessageBuilder(equipmentCount * 2, true, null, null);
+
+        statuses = new EquipmentStatus[equipmentCount * STATES.length];
+        Date now = new Date();
+        for (int i = 0; i < statuses.length; i++) {
+            statuses[i] = new EquipmentStatus(
+                    String.format("EQP%05d", i % equipmentCount), STATES[i % STATES.length], now);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        session.close();
+        connection.close();
+        connectionFactory.close();
+        broker.close();
+    }
+
+    private EquipmentStatus nextStatus() {
+        EquipmentStatus status = statuses[next];
+        next = (next + 1) % statuses.length;
+        return status;
+    }
+
+    /**
+     * 変更前の実装: メッセージごとに文字列連結とcreateQueue()を行う
+     */
+    @Benchmark
+    public TextMessage legacy() throws JMSException {
+        EquipmentStatus status = nextStatus();
+        String messageText = "currentState=\"" + status.getStatus() + "\"";
+        TextMessage message = session.createTextMessage(messageText);
+        String replyToText = "EquipmentId=" + status.getEqpId();
+        Queue replyToQueue = session.createQueue(replyToText);
+        message.setJMSReplyTo(replyToQueue);
+        return message;
+    }
+
+    @Benchmark
+    public TextMessage cached() throws JMSException {
+        return builder.build(session, nextStatus());
+    }
+
+    @Benchmark
+    public TextMessage cachedWithLatencyProperties() throws JMSException {
+        return latencyBuilder.build(session, nextStatus());
+    }
+}
@@ -0,0 +1,69 @@
+package com.equipment.messenger.benchmark;
+
+import com.equipment.messenger.Config;
+import com.equipment.messenger.DatabaseManager;
+import com.equipment.messenger.EquipmentStatus;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 装置ステータス取得（getUpdatedEquipmentStatus）のベンチマーク
+ * インメモリDBに装置ステータスを登録し、1サイクル分（全件）の取得と行の変換にかかる時間を測定する
+ * DBはプロセス内のため、Oracleとのネットワーク往復は含まず、JDBC層と行変換のコストのみを測定する
+ *
+ * 実行例: java -cp target/EqpStatusMessenger-1.0.0-jar-with-dependencies.jar com.equipment.messenger.benchmark.BenchmarkRunner RowMappingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RowMappingBenchmark {
+
+    @Param({"3000", "30000"})
+    public int equipmentCount;
+
+    @Param({"100", "1000"})
+    public int fetchSize;
+
+    private InMemoryDatabase database;
+    private DatabaseManager dbManager;
+    private Connection connection;
+    private Date fromTimestamp;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = new InMemoryDatabase("rowmapping");
+        long baseMillis = System.currentTimeMillis();
+        database.loadEquipment(equipmentCount, baseMillis);
+        fromTimestamp = new Date(baseMillis - 1);
+
+        System.setProperty("db.url", database.url());
+        System.setProperty("db.username", InMemoryDatabase.USERNAME);
+        System.setProperty("db.password", InMemoryDatabase.PASSWORD);
+        System.setProperty("db.fetch.size", String.valueOf(fetchSize));
+        dbManager = new DatabaseManager(new Config());
+        connection = dbManager.beginTransaction();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        dbManager.rollback(connection);
+        dbManager.closeConnection(connection);
+        dbManager.close();
+        database.close();
+    }
+
+    /**
+     * 1サイクル分の取得（全件）
+     */
+    @Benchmark
+    public List<EquipmentStatus> fetchAll() throws Exception {
+        return dbManager.getUpdatedEquipmentStatus(connection, fromTimestamp);
+    }
+}
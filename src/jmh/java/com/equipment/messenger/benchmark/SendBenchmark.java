@@ -0,0 +1,96 @@
+package com.equipment.messenger.benchmark;
+
+import com.equipment.messenger.Config;
+import com.equipment.messenger.EquipmentStatus;
+import com.equipment.messenger.StripedStatusSender;
+import org.apache.activemq.artemis.jms.client.ActiveMQConnectionFactory;
+import org.openjdk.jmh.annotations.*;
+
+import javax.jms.Connection;
+import javax.jms.MessageConsumer;
+import javax.jms.Session;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 組み込みブローカーへの送信スループットのベンチマーク
+ * 1サイクル分の装置ステータスをバッチ送信し、送信確定までの1メッセージあたりのスループットを測定する
+ * キューが溜まり続けないよう、受信側は別の接続で読み捨てる
+ * transport=core はJMSを経由せずにArtemisのコアクライアントAPIで送信した場合
+ * messageFormat=envelope は artemis.batch.size（100）件を1メッセージにまとめた場合（スループットは装置ステータスの件数）
+ *
+ * 実行例: java -cp target/EqpStatusMessenger-1.0.0-jar-with-dependencies.jar com.equipment.messenger.benchmark.BenchmarkRunner SendBenchmark
+ * （組み合わせが多いため、-p transport=jms,core -p stripes=1 のように絞り込むとよい）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OperationsPerInvocation(SendBenchmark.BATCH_SIZE)
+public class SendBenchmark {
+
+    static final int BATCH_SIZE = 1000;
+
+    @Param({"sync", "async"})
+    public String sendMode;
+
+    @Param({"1", "4"})
+    public int stripes;
+
+    @Param({"legacy", "envelope"})
+    public String messageFormat;
+
+    @Param({"jms", "core"})
+    public String transport;
+
+    private EmbeddedBroker broker;
+    private StripedStatusSender sender;
+    private ActiveMQConnectionFactory drainFactory;
+    private Connection drainConnection;
+    private List<EquipmentStatus> batch;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        broker = new EmbeddedBroker().start();
+
+        System.setProperty("artemis.url", EmbeddedBroker.IN_VM_URL);
+        System.setProperty("artemis.queue", "E10StateChange");
+        System.setProperty("artemis.send.mode", sendMode);
+        System.setProperty("artemis.producer.stripes", String.valueOf(stripes));
+        System.setProperty("artemis.message.format", messageFormat);
+        System.setProperty("artemis.transport", transport);
+        sender = new StripedStatusSender(new Config());
+        sender.initialize();
+
+        drainFactory = new ActiveMQConnectionFactory(EmbeddedBroker.IN_VM_URL);
+        drainConnection = drainFactory.createConnection();
+        Session session = drainConnection.createSession(false, Session.DUPS_OK_ACKNOWLEDGE);
+        MessageConsumer consumer = session.createConsumer(session.createQueue("E10StateChange"));
+        consumer.setMessageListener(message -> { });
+        drainConnection.start();
+
+        batch = new ArrayList<>(BATCH_SIZE);
+        Date now = new Date();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(new EquipmentStatus(InMemoryDatabase.equipmentId(i),
+                    InMemoryDatabase.STATES[i % InMemoryDatabase.STATES.length], now));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        sender.close();
+        drainConnection.close();
+        drainFactory.close();
+        broker.close();
+    }
+
+    @Benchmark
+    public void sendBatch() throws Exception {
+        sender.sendBatch(batch);
+    }
+}
@@ -0,0 +1,56 @@
+package com.equipment.messenger;
+
+/**
+ * 直近のサイクルの変更件数に応じてポーリング間隔を調整するスケジューラ
+ * - 未処理データが残っていると判断できる件数（backlogRows以上）: 待機せずに次のサイクルを実行
+ * - 変更あり: 間隔を半分に短縮（最小 minIntervalMs）
+ * - 変更なし: 間隔を倍に延長（最大 maxIntervalMs）
+ */
+public class AdaptivePollingScheduler {
+
+    private long minIntervalMs;
+    private long maxIntervalMs;
+    private int backlogRows;
+    private volatile long currentIntervalMs;
+
+    public AdaptivePollingScheduler(long minIntervalMs, long maxIntervalMs, int backlogRows) {
+        reconfigure(minIntervalMs, maxIntervalMs, backlogRows);
+        this.currentIntervalMs = this.maxIntervalMs;
+    }
+
+    /**
+     * 間隔の範囲と滞留判定の件数を変更（現在の間隔は新しい範囲に収めて引き継ぐ）
+     */
+    public void reconfigure(long minIntervalMs, long maxIntervalMs, int backlogRows) {
+        this.minIntervalMs = Math.max(0, Math.min(minIntervalMs, maxIntervalMs));
+        this.maxIntervalMs = maxIntervalMs;
+        this.backlogRows = Math.max(1, backlogRows);
+        this.currentIntervalMs = Math.min(this.maxIntervalMs, currentIntervalMs);
+    }
+
+    /**
+     * サイクルの結果から次の間隔を計算
+     *
+     * @param rowCount サイクルで処理した件数
+     * @return 次のサイクルまでの待機時間（ミリ秒）
+     */
+    public long onCycleCompleted(int rowCount) {
+        long next;
+        if (rowCount >= backlogRows) {
+            next = 0;
+        } else if (rowCount > 0) {
+            next = currentIntervalMs == 0 ? minIntervalMs : Math.max(minIntervalMs, currentIntervalMs / 2);
+        } else {
+            next = Math.min(maxIntervalMs, Math.max(minIntervalMs, currentIntervalMs * 2));
+        }
+        currentIntervalMs = next;
+        return next;
+    }
+
+    /**
+     * 現在のポーリング間隔（監視用）
+     */
+    public long getCurrentIntervalMs() {
+        return currentIntervalMs;
+    }
+}
@@ -5,44 +5,98 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.jms.*;
+import java.util.Collections;
+import java.util.List;
 
 /**
- * ActiveMQ Artemisメッセージング クラス
+ * ActiveMQ Artemisメッセージング クラス（JMS）
  */
-public class ArtemisMessenger implements AutoCloseable {
+public class ArtemisMessenger implements ArtemisSender {
     private static final Logger logger = LoggerFactory.getLogger(ArtemisMessenger.class);
+    // 送信記録（1メッセージ1行、logback.xmlで専用ファイルへ非同期に出力）
+    private static final Logger auditLogger = LoggerFactory.getLogger("com.equipment.messenger.audit");
 
     private final String brokerUrl;
     private final String username;
     private final String password;
     private final String queueName;
+    private final boolean asyncMode;
+    private final int confirmationWindowSize;
+    private final StatusMessageBuilder messageBuilder;
+    private final EquipmentGrouping grouping;
+    private final MessengerMetrics metrics;
+    private final LiveTuning tuning;
 
     private ActiveMQConnectionFactory connectionFactory;
     private Connection connection;
     private Session session;
     private MessageProducer producer;
+    private Session txSession;
+    private MessageProducer txProducer;
     private Queue queue;
 
-    public ArtemisMessenger(String brokerUrl, String username, String password, String queueName) {
-        this.brokerUrl = brokerUrl;
-        this.username = username;
-        this.password = password;
-        this.queueName = queueName;
+    public ArtemisMessenger(Config config) {
+        this(config, null);
+    }
+
+    /**
+     * @param metrics 再試行・再接続の回数を記録するメトリクス（記録しない場合はnull）
+     */
+    public ArtemisMessenger(Config config, MessengerMetrics metrics) {
+        this(config, metrics, new LiveTuning(config));
+    }
+
+    /**
+     * @param metrics 再試行・再接続の回数を記録するメトリクス（記録しない場合はnull）
+     * @param tuning バッチサイズ・再試行回数・非同期ウィンドウなどの設定値（送信ごとに現在の値を使用する）
+     */
+    public ArtemisMessenger(Config config, MessengerMetrics metrics, LiveTuning tuning) {
+        this.brokerUrl = config.getArtemisUrl();
+        this.username = config.getArtemisUsername();
+        this.password = config.getArtemisPassword();
+        this.queueName = config.getArtemisQueue();
+        this.asyncMode = "async".equals(config.getArtemisSendMode());
+        this.confirmationWindowSize = config.getArtemisConfirmationWindowSize();
+        // エンベロープ形式の場合は、複数の装置ステータスを1メッセージにまとめて送信する
+        StatusEnvelopeCodec envelopeCodec = StatusMessageBuilder.FORMAT_ENVELOPE.equals(config.getArtemisMessageFormat())
+                ? new StatusEnvelopeCodec(config.getArtemisEnvelopeEncoding(),
+                        config.getArtemisEnvelopeCompressThresholdBytes())
+                : null;
+        this.grouping = EquipmentGrouping.fromConfig(config);
+        this.messageBuilder = new StatusMessageBuilder(config.getArtemisReplyToCacheSize(),
+                config.isArtemisLatencyPropertiesEnabled(), envelopeCodec, grouping);
+        this.metrics = metrics;
+        this.tuning = tuning;
     }
 
     /**
      * ActiveMQ Artemisへの接続を初期化
      */
+    @Override
     public void initialize() throws JMSException {
         logger.info("ActiveMQ Artemis接続を初期化: {}", brokerUrl);
 
         connectionFactory = new ActiveMQConnectionFactory(brokerUrl, username, password);
-        connection = connectionFactory.createConnection();
-        session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
-        queue = session.createQueue(queueName);
-        producer = session.createProducer(queue);
+        if (asyncMode) {
+            // CompletionListenerを呼び出すには送信確認ウィンドウの有効化が必要
+            connectionFactory.setConfirmationWindowSize(confirmationWindowSize);
+        }
+        try {
+            connection = connectionFactory.createConnection();
+            session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            queue = session.createQueue(queueName);
+            producer = session.createProducer(queue);
+
+            // バッチ送信用のトランザクションセッション
+            txSession = connection.createSession(true, Session.SESSION_TRANSACTED);
+            txProducer = txSession.createProducer(txSession.createQueue(queueName));
 
-        connection.start();
+            connection.start();
+        } catch (JMSException e) {
+            // 作成途中の接続を残さない（フィールドもnullにし、次回の送信で再接続させる）
+            closeQuietly();
+            throw e;
+        }
         logger.info("ActiveMQ Artemis接続成功");
     }
 
@@ -51,7 +105,8 @@ public class ArtemisMessenger implements AutoCloseable {
      * 失敗時は自動的に再接続を試みる
      */
     public void sendEquipmentStatus(EquipmentStatus status) throws JMSException {
-        int maxRetries = 3;
+        TuningParameters parameters = tuning.current();
+        int maxRetries = parameters.getSendMaxRetries();
         JMSException lastException = null;
 
         for (int attempt = 1; attempt <= maxRetries; attempt++) {
@@ -62,22 +117,12 @@ public class ArtemisMessenger implements AutoCloseable {
                     reconnect();
                 }
 
-                // テキストメッセージを作成
-                String messageText = "currentState=\"" + status.getStatus() + "\"";
-                TextMessage message = session.createTextMessage(messageText);
-
-                // JMSReplyToヘッダーにEquipmentIdを設定
-                String replyToText = "EquipmentId=" + status.getEqpId();
-                Queue replyToQueue = session.createQueue(replyToText);
-                message.setJMSReplyTo(replyToQueue);
+                Message message = buildMessage(session, Collections.singletonList(status), 0, 1);
 
                 // メッセージを送信
                 producer.send(message);
 
-                logger.info("メッセージ送信 - EQPID: {}, STATUS: {}, TIME: {}",
-                        status.getEqpId(),
-                        status.getStatus(),
-                        status.getTimestampTime());
+                logSent(status);
 
                 return; // 成功したら終了
 
@@ -86,25 +131,7 @@ public class ArtemisMessenger implements AutoCloseable {
                 logger.warn("メッセージ送信失敗 (試行 {}/{}): {}", attempt, maxRetries, e.getMessage());
 
                 if (attempt < maxRetries) {
-                    try {
-                        // 古い接続をクリーンアップ
-                        closeQuietly();
-
-                        // バックオフ（指数関数的に待機時間を増やす）
-                        long backoffMs = 1000L * attempt;
-                        logger.info("{}ms後に再接続を試みます...", backoffMs);
-                        Thread.sleep(backoffMs);
-
-                        // 再接続
-                        reconnect();
-
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        logger.error("再接続待機中に中断されました", ie);
-                        throw e;
-                    } catch (Exception re) {
-                        logger.error("再接続に失敗しました", re);
-                    }
+                    backoffAndReconnect(attempt, parameters.getRetryBackoffMs(), e);
                 }
             }
         }
@@ -114,12 +141,216 @@ public class ArtemisMessenger implements AutoCloseable {
         throw lastException;
     }
 
+    /**
+     * 装置ステータスのリストをまとめて送信
+     * batchモード: トランザクションセッションでbatchSize件ごとにコミット
+     * asyncモード: 送信確認を待たずにパイプライン送信し、全件の確認を待ってから戻る
+     * エンベロープ形式の場合は、いずれのモードもbatchSize件ごとに1メッセージにまとめて送信する
+     * （グループを使用する場合は、同じグループの装置ステータスのみを1メッセージにまとめる）
+     * いずれも失敗時は未確定分からバッチ全体として再試行する
+     */
+    @Override
+    public void sendBatch(List<EquipmentStatus> statusList) throws JMSException {
+        if (statusList.isEmpty()) {
+            return;
+        }
+        // 同じグループの装置ステータスが連続するように並べ替える（装置ごとの順序は保たれる）
+        statusList = EquipmentGrouping.arrangeForSend(grouping, messageBuilder.isEnvelopeEnabled(), statusList);
+        // 送信中に設定が変更されても、このバッチは開始時の値で送信する
+        TuningParameters parameters = tuning.current();
+        if (asyncMode) {
+            sendBatchAsync(statusList, parameters);
+            return;
+        }
+
+        int batchSize = parameters.getBatchSize();
+        int maxRetries = parameters.getSendMaxRetries();
+        JMSException lastException = null;
+        int committed = 0;
+
+        for (int attempt = 1; attempt <= maxRetries; attempt++) {
+            try {
+                // 接続が初期化されていない場合は再接続
+                if (txSession == null || txProducer == null) {
+                    logger.warn("接続が初期化されていません。再接続を試みます... (試行 {}/{})", attempt, maxRetries);
+                    reconnect();
+                }
+
+                while (committed < statusList.size()) {
+                    int end = Math.min(committed + batchSize, statusList.size());
+                    for (int i = committed; i < end; ) {
+                        int messageEnd = messageEnd(statusList, i, end);
+                        txProducer.send(buildMessage(txSession, statusList, i, messageEnd));
+                        i = messageEnd;
+                    }
+                    txSession.commit();
+
+                    logSent(statusList, committed, end);
+                    committed = end;
+                }
+
+                return; // 成功したら終了
+
+            } catch (JMSException e) {
+                lastException = e;
+                logger.warn("バッチ送信失敗 (試行 {}/{}, 送信済み {}/{}件): {}",
+                        attempt, maxRetries, committed, statusList.size(), e.getMessage());
+                rollbackQuietly();
+
+                if (attempt < maxRetries) {
+                    backoffAndReconnect(attempt, parameters.getRetryBackoffMs(), e);
+                }
+            }
+        }
+
+        // すべてのリトライが失敗した場合
+        logger.error("{}回の試行後もバッチ送信に失敗しました (送信済み {}/{}件)",
+                maxRetries, committed, statusList.size());
+        throw lastException;
+    }
+
+    /**
+     * 装置ステータスのリストを非同期で送信（JMS 2.0 CompletionListener）
+     * 確認待ちのメッセージ数をasyncWindow件に制限し、全件の送信確認が揃うまで待機する
+     * 戻った時点で全メッセージがブローカーに永続化されているため、呼び出し側はタイムスタンプを更新してよい
+     */
+    private void sendBatchAsync(List<EquipmentStatus> statusList, TuningParameters parameters) throws JMSException {
+        int asyncWindow = parameters.getAsyncWindow();
+        // エンベロープ形式の場合は最大batchSize件で1メッセージ（確認待ちの上限はメッセージ数）
+        int batchSize = parameters.getBatchSize();
+        long asyncConfirmTimeoutMs = parameters.getAsyncConfirmTimeoutMs();
+        int maxRetries = parameters.getSendMaxRetries();
+        JMSException lastException = null;
+        int confirmed = 0;
+
+        for (int attempt = 1; attempt <= maxRetries; attempt++) {
+            AsyncSendWindow window = new AsyncSendWindow(asyncWindow, confirmed);
+            try {
+                // 接続が初期化されていない場合は再接続
+                if (session == null || producer == null) {
+                    logger.warn("接続が初期化されていません。再接続を試みます... (試行 {}/{})", attempt, maxRetries);
+                    reconnect();
+                }
+
+                for (int i = confirmed; i < statusList.size(); ) {
+                    int end = messageEnd(statusList, i, Math.min(i + batchSize, statusList.size()));
+                    window.acquire(asyncConfirmTimeoutMs);
+                    producer.send(buildMessage(session, statusList, i, end), window.listenerFor(i, end));
+                    i = end;
+                }
+                window.awaitAll(asyncConfirmTimeoutMs);
+
+                logSent(statusList, confirmed, statusList.size());
+
+                return; // 成功したら終了
+
+            } catch (JMSException e) {
+                lastException = e;
+                // 先頭から連続して確認済みのメッセージはスキップし、それ以降を再送する
+                confirmed = window.firstUnconfirmed();
+                logger.warn("非同期送信失敗 (試行 {}/{}, 確認済み {}/{}件): {}",
+                        attempt, maxRetries, confirmed, statusList.size(), e.getMessage());
+
+                if (attempt < maxRetries) {
+                    backoffAndReconnect(attempt, parameters.getRetryBackoffMs(), e);
+                }
+            }
+        }
+
+        // すべてのリトライが失敗した場合
+        logger.error("{}回の試行後も非同期送信に失敗しました (確認済み {}/{}件)",
+                maxRetries, confirmed, statusList.size());
+        throw lastException;
+    }
+
+    /**
+     * from から始まるメッセージに含める範囲の終わり（{@link EquipmentGrouping#messageEnd} を参照）
+     */
+    private int messageEnd(List<EquipmentStatus> statusList, int from, int limit) {
+        return EquipmentGrouping.messageEnd(grouping, messageBuilder.isEnvelopeEnabled(), statusList, from, limit);
+    }
+
+    /**
+     * statusList の from から to までのメッセージを作成（従来の形式では from の1件のみ）
+     */
+    private Message buildMessage(Session target, List<EquipmentStatus> statusList, int from, int to)
+            throws JMSException {
+        return messageBuilder.isEnvelopeEnabled()
+                ? messageBuilder.buildEnvelope(target, statusList, from, to)
+                : messageBuilder.build(target, statusList.get(from));
+    }
+
+    /**
+     * 送信記録を出力
+     */
+    static void logSent(EquipmentStatus status) {
+        auditLogger.info("メッセージ送信 - EQPID: {}, STATUS: {}, TIME: {}",
+                status.getEqpId(),
+                status.getStatus(),
+                status.getTimestampTime());
+    }
+
+    static void logSent(List<EquipmentStatus> statusList, int from, int to) {
+        if (!auditLogger.isInfoEnabled()) {
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            logSent(statusList.get(i));
+        }
+    }
+
+    /**
+     * 送信失敗後、古い接続をクリーンアップしてバックオフ後に再接続
+     */
+    private void backoffAndReconnect(int attempt, long backoffBaseMs, JMSException cause) throws JMSException {
+        if (metrics != null) {
+            metrics.recordSendRetry();
+        }
+        try {
+            // 古い接続をクリーンアップ
+            closeQuietly();
+
+            // バックオフ（試行回数に応じて待機時間を増やす）
+            long backoffMs = backoffBaseMs * attempt;
+            logger.info("{}ms後に再接続を試みます...", backoffMs);
+            Thread.sleep(backoffMs);
+
+            // 再接続
+            reconnect();
+            if (metrics != null) {
+                metrics.recordReconnect();
+            }
+
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            logger.error("再接続待機中に中断されました", ie);
+            throw cause;
+        } catch (Exception re) {
+            logger.error("再接続に失敗しました", re);
+        }
+    }
+
+    /**
+     * 未コミットの送信をロールバック（例外は握りつぶす）
+     */
+    private void rollbackQuietly() {
+        try {
+            if (txSession != null) {
+                txSession.rollback();
+            }
+        } catch (Exception e) {
+            logger.debug("ロールバック時のエラー（無視）: {}", e.getMessage());
+        }
+    }
+
     /**
      * 再接続を試みる
      */
     private void reconnect() throws JMSException {
         logger.info("ActiveMQ Artemis再接続を試みます: {}", brokerUrl);
         closeQuietly();
+        // 古い接続で作成したDestinationは再利用しない
+        messageBuilder.invalidate();
         initialize();
         logger.info("ActiveMQ Artemis再接続成功");
     }
@@ -128,41 +359,59 @@ public class ArtemisMessenger implements AutoCloseable {
      * 例外を握りつぶしてクローズ（再接続時に使用）
      */
     private void closeQuietly() {
+        try {
+            if (txProducer != null) {
+                txProducer.close();
+            }
+        } catch (Exception e) {
+            logger.debug("Producer クローズ時のエラー（無視）: {}", e.getMessage());
+        }
+        txProducer = null;
+
+        try {
+            if (txSession != null) {
+                txSession.close();
+            }
+        } catch (Exception e) {
+            logger.debug("Session クローズ時のエラー（無視）: {}", e.getMessage());
+        }
+        txSession = null;
+
         try {
             if (producer != null) {
                 producer.close();
-                producer = null;
             }
         } catch (Exception e) {
             logger.debug("Producer クローズ時のエラー（無視）: {}", e.getMessage());
         }
+        producer = null;
 
         try {
             if (session != null) {
                 session.close();
-                session = null;
             }
         } catch (Exception e) {
             logger.debug("Session クローズ時のエラー（無視）: {}", e.getMessage());
         }
+        session = null;
 
         try {
             if (connection != null) {
                 connection.close();
-                connection = null;
             }
         } catch (Exception e) {
             logger.debug("Connection クローズ時のエラー（無視）: {}", e.getMessage());
         }
+        connection = null;
 
         try {
             if (connectionFactory != null) {
                 connectionFactory.close();
-                connectionFactory = null;
             }
         } catch (Exception e) {
             logger.debug("ConnectionFactory クローズ時のエラー（無視）: {}", e.getMessage());
         }
+        connectionFactory = null;
     }
 
     /**
@@ -184,22 +433,8 @@ public class ArtemisMessenger implements AutoCloseable {
      */
     @Override
     public void close() {
-        try {
-            if (producer != null) {
-                producer.close();
-            }
-            if (session != null) {
-                session.close();
-            }
-            if (connection != null) {
-                connection.close();
-            }
-            if (connectionFactory != null) {
-                connectionFactory.close();
-            }
-            logger.info("ActiveMQ Artemis接続をクローズしました");
-        } catch (JMSException e) {
-            logger.error("リソースのクローズに失敗", e);
-        }
+        // 途中のクローズに失敗しても残りの接続を閉じる（CoreArtemisMessenger と同様）
+        closeQuietly();
+        logger.info("ActiveMQ Artemis接続をクローズしました");
     }
 }
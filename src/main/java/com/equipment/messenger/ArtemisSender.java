@@ -0,0 +1,23 @@
+package com.equipment.messenger;
+
+import javax.jms.JMSException;
+import java.util.List;
+
+/**
+ * ActiveMQ Artemisへの送信（1本の接続）
+ * JMS（ArtemisMessenger）とコアプロトコル（CoreArtemisMessenger）の実装があり、artemis.transport で選択する
+ * 失敗時の再試行・再接続は実装側で行い、すべての試行が失敗した場合のみ例外を送出する
+ */
+public interface ArtemisSender extends StatusSender, AutoCloseable {
+
+    /**
+     * ブローカーへの接続を初期化
+     */
+    void initialize() throws JMSException;
+
+    @Override
+    void sendBatch(List<EquipmentStatus> statusList) throws JMSException;
+
+    @Override
+    void close();
+}
@@ -0,0 +1,110 @@
+package com.equipment.messenger;
+
+import javax.jms.CompletionListener;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import java.util.BitSet;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 非同期送信の確認待ちウィンドウ
+ * 確認待ちメッセージ数の上限管理と、どの装置ステータスまで確認済みかの追跡を行う
+ * JMS（CompletionListener）とコアプロトコル（SendAcknowledgementHandler）の両方の送信で使用する
+ */
+class AsyncSendWindow {
+    private final int windowSize;
+    private final Semaphore permits;
+    private final BitSet confirmed = new BitSet();
+    private final int startIndex;
+    private JMSException failure;
+
+    AsyncSendWindow(int windowSize, int startIndex) {
+        this.windowSize = windowSize;
+        this.permits = new Semaphore(windowSize);
+        this.startIndex = startIndex;
+    }
+
+    void acquire(long timeoutMs) throws JMSException {
+        throwIfFailed();
+        try {
+            if (!permits.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new JMSException("送信確認の待機がタイムアウトしました (" + timeoutMs + "ms)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JMSException("送信確認の待機中に中断されました");
+        }
+    }
+
+    /**
+     * from から to（含まない）までの装置ステータスを含むメッセージの送信確認を記録
+     */
+    void confirm(int from, int to) {
+        synchronized (this) {
+            confirmed.set(from, to);
+        }
+        permits.release();
+    }
+
+    /**
+     * メッセージの送信失敗を記録（最初の失敗を送出する）
+     */
+    void fail(Exception exception) {
+        synchronized (this) {
+            if (failure == null) {
+                failure = exception instanceof JMSException
+                        ? (JMSException) exception
+                        : new JMSException("非同期送信に失敗しました: " + exception.getMessage());
+            }
+        }
+        permits.release();
+    }
+
+    /**
+     * from から to（含まない）までの装置ステータスを含むメッセージの送信確認を受け取るリスナー（JMS）
+     */
+    CompletionListener listenerFor(int from, int to) {
+        return new CompletionListener() {
+            @Override
+            public void onCompletion(Message message) {
+                confirm(from, to);
+            }
+
+            @Override
+            public void onException(Message message, Exception exception) {
+                fail(exception);
+            }
+        };
+    }
+
+    /**
+     * 送信済みの全メッセージの確認（成功または失敗）を待機
+     */
+    void awaitAll(long timeoutMs) throws JMSException {
+        acquireAll(timeoutMs);
+        throwIfFailed();
+    }
+
+    private void acquireAll(long timeoutMs) throws JMSException {
+        try {
+            if (!permits.tryAcquire(windowSize, timeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new JMSException("送信確認の待機がタイムアウトしました (" + timeoutMs + "ms)");
+            }
+            permits.release(windowSize);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JMSException("送信確認の待機中に中断されました");
+        }
+    }
+
+    private synchronized void throwIfFailed() throws JMSException {
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    synchronized int firstUnconfirmed() {
+        return confirmed.nextClearBit(startIndex);
+    }
+}
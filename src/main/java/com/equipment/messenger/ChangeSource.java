@@ -0,0 +1,32 @@
+package com.equipment.messenger;
+
+/**
+ * 装置ステータスの変更検知インターフェース
+ * メインループは各サイクルの後にawaitChangeで次のサイクルの開始を待つ
+ */
+public interface ChangeSource extends AutoCloseable {
+
+    /**
+     * 変更検知を開始
+     */
+    void start();
+
+    /**
+     * 変更があるか、タイムアウトするまで待機
+     *
+     * @param timeoutMs 最大待機時間（ミリ秒）
+     * @return 変更通知を受けた場合はtrue、タイムアウトした場合はfalse
+     */
+    boolean awaitChange(long timeoutMs) throws InterruptedException;
+
+    /**
+     * 待機中のawaitChangeを直ちに戻す（停止要求時に使用）
+     */
+    void wakeUp();
+
+    /**
+     * 変更検知を停止
+     */
+    @Override
+    void close();
+}
@@ -7,7 +7,13 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * 設定管理クラス
@@ -21,13 +27,23 @@ import java.util.Properties;
 public class Config {
     private static final Logger logger = LoggerFactory.getLogger(Config.class);
     private final Properties properties;
+    private final String filename;
+    // 読み込んだ外部設定ファイル（クラスパスから読み込んだ場合はnull）
+    private final File sourceFile;
 
     public Config() throws IOException {
         this("application.properties");
     }
 
+    private Config(Properties properties, String filename, File sourceFile) {
+        this.properties = properties;
+        this.filename = filename;
+        this.sourceFile = sourceFile;
+    }
+
     public Config(String filename) throws IOException {
         properties = new Properties();
+        this.filename = filename;
 
         // 1. ./config/application.properties を試す
         File configDir = new File("config", filename);
@@ -36,6 +52,7 @@ public class Config {
                 properties.load(input);
                 logger.info("設定ファイルを読み込みました: {}", configDir.getAbsolutePath());
             }
+            sourceFile = configDir.getAbsoluteFile();
         }
         // 2. ./application.properties を試す
         else {
@@ -45,6 +62,7 @@ public class Config {
                     properties.load(input);
                     logger.info("設定ファイルを読み込みました: {}", currentDir.getAbsolutePath());
                 }
+                sourceFile = currentDir.getAbsoluteFile();
             }
             // 3. クラスパス（jarファイル内）から読み込む
             else {
@@ -55,6 +73,7 @@ public class Config {
                     properties.load(input);
                     logger.info("設定ファイルを読み込みました (クラスパス): {}", filename);
                 }
+                sourceFile = null;
             }
         }
 
@@ -68,11 +87,35 @@ public class Config {
      */
     private void overrideWithSystemProperties() {
         String[] keys = {
-            "db.url", "db.username", "db.password", "db.equipment.table",
+            "db.url", "db.username", "db.password", "db.equipment.table", "db.timestamp.table",
+            "db.pool.max.size", "db.pool.min.idle", "db.pool.idle.timeout.ms", "db.pool.max.lifetime.ms",
+            "db.pool.connection.timeout.ms", "db.pool.validation.timeout.ms", "db.statement.cache.size",
+            "db.fetch.size",
             "artemis.url", "artemis.username", "artemis.password", "artemis.queue",
-            "app.interval.seconds",
+            "artemis.batch.size", "artemis.send.mode", "artemis.async.window",
+            "artemis.async.confirm.timeout.ms", "artemis.confirmation.window.size",
+            "artemis.replyto.cache.size", "artemis.producer.stripes", "artemis.latency.properties.enabled",
+            "artemis.send.max.retries", "artemis.retry.backoff.ms",
+            "artemis.message.format", "artemis.envelope.encoding", "artemis.envelope.compress.threshold.bytes",
+            "artemis.transport", "artemis.core.producer.window.size", "artemis.core.block.on.durable.send",
+            "artemis.group.enabled", "artemis.group.buckets",
+            "app.interval.seconds", "app.streaming.enabled", "app.streaming.queue.capacity",
+            "app.catchup.enabled", "app.catchup.chunk.size",
+            "app.changesource", "app.changesource.safety.net.seconds", "app.changesource.min.interval.ms",
+            "app.changesource.dcn.client.initiated",
+            "app.interval.adaptive.enabled", "app.interval.adaptive.min.ms", "app.interval.adaptive.backlog.rows",
+            "app.dedup.enabled", "app.dedup.coalesce", "app.dedup.single.instance",
+            "app.dedup.store.enabled", "app.dedup.store.path", "app.dedup.store.slots", "app.dedup.store.force",
+            "app.outbox.enabled", "app.outbox.path", "app.outbox.size.mb", "app.outbox.force",
+            "app.outbox.forward.batch.size", "app.outbox.retry.ms",
+            "app.instance.id", "app.lock.retry.seconds",
+            "app.leader.enabled", "app.leader.lease.name", "app.leader.lease.ms", "app.leader.heartbeat.ms",
+            "app.partition.enabled", "app.partition.count", "app.pipelines",
+            "app.metrics.jmx.enabled", "app.metrics.http.enabled", "app.metrics.http.port",
+            "app.latency.report.seconds", "app.config.watch.enabled", "app.shutdown.timeout.seconds",
             "mail.notification.enabled", "mail.smtp.host", "mail.smtp.port", "mail.smtp.auth",
-            "mail.smtp.starttls.enable", "mail.username", "mail.password", "mail.from", "mail.to"
+            "mail.smtp.starttls.enable", "mail.username", "mail.password", "mail.from", "mail.to",
+            "mail.smtp.timeout.ms", "mail.queue.capacity"
         };
 
         for (String key : keys) {
@@ -85,6 +128,99 @@ public class Config {
         }
     }
 
+    /**
+     * 1つのプロセスで並行して実行するパイプライン名の一覧（app.pipelines、カンマ区切り）
+     * 空の場合は従来どおり1つのパイプラインのみを実行する
+     */
+    public List<String> getPipelineNames() {
+        List<String> names = new ArrayList<>();
+        for (String name : properties.getProperty("app.pipelines", "").split(",")) {
+            if (!name.trim().isEmpty()) {
+                names.add(name.trim());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * パイプライン用の設定を作成
+     * pipeline.<名前>.<キー> の値で <キー> の値を上書きする（例: pipeline.areaA.db.equipment.table）
+     * 送信ジャーナル・最終状態ストアのファイルとリース名は、指定がなければパイプラインごとに分ける
+     */
+    public Config forPipeline(String name) {
+        String prefix = "pipeline." + name + ".";
+        Properties merged = new Properties();
+        merged.putAll(properties);
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(prefix)) {
+                merged.setProperty(key.substring(prefix.length()), properties.getProperty(key));
+            }
+        }
+
+        if (!properties.containsKey(prefix + "app.dedup.store.path")) {
+            merged.setProperty("app.dedup.store.path", pipelinePath(getDedupStorePath(), name));
+        }
+        if (!properties.containsKey(prefix + "app.outbox.path")) {
+            merged.setProperty("app.outbox.path", pipelinePath(getOutboxPath(), name));
+        }
+        if (!properties.containsKey(prefix + "app.leader.lease.name")) {
+            merged.setProperty("app.leader.lease.name", getLeaderLeaseName() + "-" + name);
+        }
+        merged.setProperty("app.pipeline.name", name);
+        return new Config(merged, filename, sourceFile);
+    }
+
+    /**
+     * 設定ファイルを読み込み直した設定を作成（パイプライン用の設定の場合は同じパイプラインの設定を返す）
+     */
+    public Config reload() throws IOException {
+        Config reloaded = new Config(filename);
+        String pipelineName = getPipelineName();
+        return pipelineName.isEmpty() ? reloaded : reloaded.forPipeline(pipelineName);
+    }
+
+    /**
+     * 指定した値で上書きした設定を作成（JMXからの設定変更に使用）
+     */
+    Config withOverrides(Properties overrides) {
+        Properties merged = new Properties();
+        merged.putAll(properties);
+        merged.putAll(overrides);
+        return new Config(merged, filename, sourceFile);
+    }
+
+    /**
+     * この設定と値が異なるキーの一覧（追加・削除されたキーを含む）
+     */
+    Set<String> changedKeys(Config other) {
+        Set<String> keys = new TreeSet<>(properties.stringPropertyNames());
+        keys.addAll(other.properties.stringPropertyNames());
+        keys.removeIf(key -> {
+            String value = properties.getProperty(key);
+            return value != null && value.equals(other.properties.getProperty(key));
+        });
+        return keys;
+    }
+
+    /**
+     * 読み込んだ外部設定ファイル（クラスパス内の設定ファイルを使用している場合はnull）
+     */
+    public File getSourceFile() {
+        return sourceFile;
+    }
+
+    private static String pipelinePath(String path, String pipelineName) {
+        File file = new File(path);
+        return new File(new File(file.getParentFile(), pipelineName), file.getName()).getPath();
+    }
+
+    /**
+     * パイプライン名（app.pipelinesを使用しない場合は空文字）
+     */
+    public String getPipelineName() {
+        return properties.getProperty("app.pipeline.name", "");
+    }
+
     public String getDatabaseUrl() {
         return properties.getProperty("db.url");
     }
@@ -101,6 +237,42 @@ public class Config {
         return properties.getProperty("db.equipment.table", "EQUIPMENT_STATUS");
     }
 
+    public String getTimestampTableName() {
+        return properties.getProperty("db.timestamp.table", "RTI_TIMESTAMP");
+    }
+
+    public int getDatabasePoolMaxSize() {
+        return Integer.parseInt(properties.getProperty("db.pool.max.size", "3"));
+    }
+
+    public int getDatabasePoolMinIdle() {
+        return Integer.parseInt(properties.getProperty("db.pool.min.idle", "1"));
+    }
+
+    public long getDatabasePoolIdleTimeoutMs() {
+        return Long.parseLong(properties.getProperty("db.pool.idle.timeout.ms", "600000"));
+    }
+
+    public long getDatabasePoolMaxLifetimeMs() {
+        return Long.parseLong(properties.getProperty("db.pool.max.lifetime.ms", "1800000"));
+    }
+
+    public long getDatabasePoolConnectionTimeoutMs() {
+        return Long.parseLong(properties.getProperty("db.pool.connection.timeout.ms", "10000"));
+    }
+
+    public long getDatabasePoolValidationTimeoutMs() {
+        return Long.parseLong(properties.getProperty("db.pool.validation.timeout.ms", "3000"));
+    }
+
+    public int getDatabaseStatementCacheSize() {
+        return Integer.parseInt(properties.getProperty("db.statement.cache.size", "20"));
+    }
+
+    public int getDatabaseFetchSize() {
+        return Integer.parseInt(properties.getProperty("db.fetch.size", "500"));
+    }
+
     public String getArtemisUrl() {
         return properties.getProperty("artemis.url");
     }
@@ -117,10 +289,287 @@ public class Config {
         return properties.getProperty("artemis.queue", "E10StateChange");
     }
 
+    public int getArtemisBatchSize() {
+        return Integer.parseInt(properties.getProperty("artemis.batch.size", "100"));
+    }
+
+    /**
+     * 送信モード: batch（トランザクション送信）または async（非同期パイプライン送信）
+     */
+    public String getArtemisSendMode() {
+        return properties.getProperty("artemis.send.mode", "batch").trim().toLowerCase();
+    }
+
+    public int getArtemisAsyncWindow() {
+        return Integer.parseInt(properties.getProperty("artemis.async.window", "1000"));
+    }
+
+    public long getArtemisAsyncConfirmTimeoutMs() {
+        return Long.parseLong(properties.getProperty("artemis.async.confirm.timeout.ms", "30000"));
+    }
+
+    public int getArtemisConfirmationWindowSize() {
+        return Integer.parseInt(properties.getProperty("artemis.confirmation.window.size", "1048576"));
+    }
+
+    public int getArtemisReplyToCacheSize() {
+        return Integer.parseInt(properties.getProperty("artemis.replyto.cache.size", "10000"));
+    }
+
+    public int getArtemisProducerStripes() {
+        return Integer.parseInt(properties.getProperty("artemis.producer.stripes", "1"));
+    }
+
+    /**
+     * 送信に使用するクライアント: jms（JMS API）または core（Artemisのコアクライアント API）
+     */
+    public String getArtemisTransport() {
+        return properties.getProperty("artemis.transport", "jms").trim().toLowerCase();
+    }
+
+    /**
+     * コアプロトコルのプロデューサーのフロー制御ウィンドウ（バイト、-1で無制限）
+     */
+    public int getArtemisCoreProducerWindowSize() {
+        return Integer.parseInt(properties.getProperty("artemis.core.producer.window.size", "65536"));
+    }
+
+    /**
+     * コアプロトコルで永続メッセージを送信する際にブローカーの応答を待つか（asyncモードでは常に待たない）
+     */
+    public boolean isArtemisCoreBlockOnDurableSend() {
+        return Boolean.parseBoolean(properties.getProperty("artemis.core.block.on.durable.send", "true"));
+    }
+
+    /**
+     * メッセージにJMSXGroupID（装置ごとのグループ）を付与するか
+     */
+    public boolean isArtemisGroupEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("artemis.group.enabled", "false"));
+    }
+
+    /**
+     * グループのバケット数（0の場合はEQPIDをそのままグループIDにする）
+     */
+    public int getArtemisGroupBuckets() {
+        return Integer.parseInt(properties.getProperty("artemis.group.buckets", "0"));
+    }
+
+    /**
+     * メッセージ形式: legacy（1件1メッセージのTextMessage）または envelope（複数件を1つのBytesMessageにまとめる）
+     */
+    public String getArtemisMessageFormat() {
+        return properties.getProperty("artemis.message.format", "legacy").trim().toLowerCase();
+    }
+
+    /**
+     * エンベロープの符号化形式: binary または json
+     */
+    public String getArtemisEnvelopeEncoding() {
+        return properties.getProperty("artemis.envelope.encoding", "binary").trim().toLowerCase();
+    }
+
+    /**
+     * エンベロープの本文をgzip圧縮する最小サイズ（バイト、負の値の場合は圧縮しない）
+     */
+    public int getArtemisEnvelopeCompressThresholdBytes() {
+        return Integer.parseInt(properties.getProperty("artemis.envelope.compress.threshold.bytes", "4096"));
+    }
+
+    public int getArtemisSendMaxRetries() {
+        return Integer.parseInt(properties.getProperty("artemis.send.max.retries", "3"));
+    }
+
+    /**
+     * 送信失敗後の再接続までの待機時間（試行回数に比例して延ばす）
+     */
+    public long getArtemisRetryBackoffMs() {
+        return Long.parseLong(properties.getProperty("artemis.retry.backoff.ms", "1000"));
+    }
+
+    public boolean isArtemisLatencyPropertiesEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("artemis.latency.properties.enabled", "true"));
+    }
+
     public int getIntervalSeconds() {
         return Integer.parseInt(properties.getProperty("app.interval.seconds", "60"));
     }
 
+    public boolean isAdaptiveIntervalEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("app.interval.adaptive.enabled", "false"));
+    }
+
+    public long getAdaptiveIntervalMinMs() {
+        return Long.parseLong(properties.getProperty("app.interval.adaptive.min.ms", "1000"));
+    }
+
+    public int getAdaptiveIntervalBacklogRows() {
+        return Integer.parseInt(properties.getProperty("app.interval.adaptive.backlog.rows", "1000"));
+    }
+
+    public boolean isStreamingEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("app.streaming.enabled", "false"));
+    }
+
+    public int getStreamingQueueCapacity() {
+        return Integer.parseInt(properties.getProperty("app.streaming.queue.capacity", "5000"));
+    }
+
+    public boolean isCatchUpEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("app.catchup.enabled", "false"));
+    }
+
+    public int getCatchUpChunkSize() {
+        return Integer.parseInt(properties.getProperty("app.catchup.chunk.size", "1000"));
+    }
+
+    /**
+     * 変更検知方式: poll（固定間隔ポーリング）または dcn（Oracle変更通知）
+     */
+    public String getChangeSource() {
+        return properties.getProperty("app.changesource", "poll").trim().toLowerCase();
+    }
+
+    public int getChangeSourceSafetyNetSeconds() {
+        return Integer.parseInt(properties.getProperty("app.changesource.safety.net.seconds", "300"));
+    }
+
+    public long getChangeSourceMinIntervalMs() {
+        return Long.parseLong(properties.getProperty("app.changesource.min.interval.ms", "200"));
+    }
+
+    public boolean isChangeSourceDcnClientInitiated() {
+        return Boolean.parseBoolean(properties.getProperty("app.changesource.dcn.client.initiated", "true"));
+    }
+
+    public boolean isDedupEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("app.dedup.enabled", "false"));
+    }
+
+    /**
+     * リーダーリース・パーティション処理を使用せずに重複抑止を有効にする場合に、
+     * 同時に実行するインスタンスが1つのみであることを明示する
+     */
+    public boolean isDedupSingleInstance() {
+        return Boolean.parseBoolean(properties.getProperty("app.dedup.single.instance", "false"));
+    }
+
+    public boolean isDedupCoalesceEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("app.dedup.coalesce", "false"));
+    }
+
+    public boolean isDedupStoreEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("app.dedup.store.enabled", "false"));
+    }
+
+    public String getDedupStorePath() {
+        return properties.getProperty("app.dedup.store.path", "data/last-state.dat");
+    }
+
+    public int getDedupStoreSlots() {
+        return Integer.parseInt(properties.getProperty("app.dedup.store.slots", "16384"));
+    }
+
+    public boolean isDedupStoreForce() {
+        return Boolean.parseBoolean(properties.getProperty("app.dedup.store.force", "false"));
+    }
+
+    public boolean isOutboxEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("app.outbox.enabled", "false"));
+    }
+
+    public String getOutboxPath() {
+        return properties.getProperty("app.outbox.path", "data/outbox.journal");
+    }
+
+    public int getOutboxSizeMb() {
+        return Integer.parseInt(properties.getProperty("app.outbox.size.mb", "64"));
+    }
+
+    public boolean isOutboxForce() {
+        return Boolean.parseBoolean(properties.getProperty("app.outbox.force", "true"));
+    }
+
+    public int getOutboxForwardBatchSize() {
+        return Integer.parseInt(properties.getProperty("app.outbox.forward.batch.size", "500"));
+    }
+
+    public long getOutboxRetryMs() {
+        return Long.parseLong(properties.getProperty("app.outbox.retry.ms", "5000"));
+    }
+
+    public int getLockRetrySeconds() {
+        return Integer.parseInt(properties.getProperty("app.lock.retry.seconds", "30"));
+    }
+
+    public int getShutdownTimeoutSeconds() {
+        return Integer.parseInt(properties.getProperty("app.shutdown.timeout.seconds", "60"));
+    }
+
+    public boolean isLeaderEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("app.leader.enabled", "false"));
+    }
+
+    public String getLeaderLeaseName() {
+        return properties.getProperty("app.leader.lease.name", "EqpStatusMessenger");
+    }
+
+    /**
+     * リーダーリース・パーティションの所有者として使用するインスタンスID（未指定の場合は ホスト名:プロセスID）
+     */
+    public String getInstanceId() {
+        String instanceId = properties.getProperty("app.instance.id", "").trim();
+        if (!instanceId.isEmpty()) {
+            return instanceId;
+        }
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "unknown";
+        }
+        return host + ":" + ProcessHandle.current().pid();
+    }
+
+    public long getLeaderLeaseMs() {
+        return Long.parseLong(properties.getProperty("app.leader.lease.ms", "5000"));
+    }
+
+    public long getLeaderHeartbeatMs() {
+        return Long.parseLong(properties.getProperty("app.leader.heartbeat.ms", "1000"));
+    }
+
+    public boolean isPartitionEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("app.partition.enabled", "false"));
+    }
+
+    public int getPartitionCount() {
+        return Integer.parseInt(properties.getProperty("app.partition.count", "8"));
+    }
+
+    public int getLatencyReportSeconds() {
+        return Integer.parseInt(properties.getProperty("app.latency.report.seconds", "60"));
+    }
+
+    /**
+     * 設定ファイルの変更を監視し、処理間隔・バッチサイズなどを再起動せずに反映するか
+     */
+    public boolean isConfigWatchEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("app.config.watch.enabled", "true"));
+    }
+
+    public boolean isMetricsJmxEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("app.metrics.jmx.enabled", "true"));
+    }
+
+    public boolean isMetricsHttpEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("app.metrics.http.enabled", "false"));
+    }
+
+    public int getMetricsHttpPort() {
+        return Integer.parseInt(properties.getProperty("app.metrics.http.port", "9404"));
+    }
+
     public boolean isMailNotificationEnabled() {
         return Boolean.parseBoolean(properties.getProperty("mail.notification.enabled", "false"));
     }
@@ -156,4 +605,12 @@ public class Config {
     public String getMailTo() {
         return properties.getProperty("mail.to");
     }
+
+    public int getMailSmtpTimeoutMs() {
+        return Integer.parseInt(properties.getProperty("mail.smtp.timeout.ms", "10000"));
+    }
+
+    public int getMailQueueCapacity() {
+        return Integer.parseInt(properties.getProperty("mail.queue.capacity", "100"));
+    }
 }
@@ -0,0 +1,363 @@
+package com.equipment.messenger;
+
+import org.apache.activemq.artemis.api.core.ActiveMQException;
+import org.apache.activemq.artemis.api.core.Message;
+import org.apache.activemq.artemis.api.core.SimpleString;
+import org.apache.activemq.artemis.api.core.client.ActiveMQClient;
+import org.apache.activemq.artemis.api.core.client.ClientMessage;
+import org.apache.activemq.artemis.api.core.client.ClientProducer;
+import org.apache.activemq.artemis.api.core.client.ClientSession;
+import org.apache.activemq.artemis.api.core.client.ClientSessionFactory;
+import org.apache.activemq.artemis.api.core.client.SendAcknowledgementHandler;
+import org.apache.activemq.artemis.api.core.client.ServerLocator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.JMSException;
+import java.util.List;
+
+/**
+ * ActiveMQ Artemisメッセージング クラス（コアプロトコル）
+ * JMSのラッパーを経由せずにコアクライアントAPIで送信する。送信するメッセージの内容と、
+ * batch / async の各モード、再試行・再接続の動作は ArtemisMessenger と同じ
+ *
+ * - artemis.core.producer.window.size: プロデューサーのフロー制御ウィンドウ（バイト、-1で無制限）
+ * - artemis.confirmation.window.size: asyncモードで送信確認を受け取るためのウィンドウ（バイト）
+ * - artemis.core.block.on.durable.send: batchモードのコミット以外の永続メッセージ送信で、ブローカーの応答を待つか
+ *   （asyncモードは送信確認をハンドラーで受け取るため、常に待たない）
+ */
+public class CoreArtemisMessenger implements ArtemisSender {
+    private static final Logger logger = LoggerFactory.getLogger(CoreArtemisMessenger.class);
+
+    private final String brokerUrl;
+    private final String username;
+    private final String password;
+    private final SimpleString address;
+    private final boolean asyncMode;
+    private final int producerWindowSize;
+    private final int confirmationWindowSize;
+    private final boolean blockOnDurableSend;
+    private final CoreStatusMessageBuilder messageBuilder;
+    private final EquipmentGrouping grouping;
+    private final MessengerMetrics metrics;
+    private final LiveTuning tuning;
+
+    private ServerLocator locator;
+    private ClientSessionFactory sessionFactory;
+    private ClientSession session;
+    private ClientProducer producer;
+    private ClientSession txSession;
+    private ClientProducer txProducer;
+
+    /**
+     * @param metrics 再試行・再接続の回数を記録するメトリクス（記録しない場合はnull）
+     * @param tuning バッチサイズ・再試行回数・非同期ウィンドウなどの設定値（送信ごとに現在の値を使用する）
+     */
+    public CoreArtemisMessenger(Config config, MessengerMetrics metrics, LiveTuning tuning) {
+        this.brokerUrl = config.getArtemisUrl();
+        this.username = config.getArtemisUsername();
+        this.password = config.getArtemisPassword();
+        this.address = SimpleString.toSimpleString(config.getArtemisQueue());
+        this.asyncMode = "async".equals(config.getArtemisSendMode());
+        this.producerWindowSize = config.getArtemisCoreProducerWindowSize();
+        this.confirmationWindowSize = config.getArtemisConfirmationWindowSize();
+        this.blockOnDurableSend = config.isArtemisCoreBlockOnDurableSend();
+        StatusEnvelopeCodec envelopeCodec = StatusMessageBuilder.FORMAT_ENVELOPE.equals(config.getArtemisMessageFormat())
+                ? new StatusEnvelopeCodec(config.getArtemisEnvelopeEncoding(),
+                        config.getArtemisEnvelopeCompressThresholdBytes())
+                : null;
+        this.grouping = EquipmentGrouping.fromConfig(config);
+        this.messageBuilder = new CoreStatusMessageBuilder(config.getArtemisReplyToCacheSize(),
+                config.isArtemisLatencyPropertiesEnabled(), envelopeCodec, grouping);
+        this.metrics = metrics;
+        this.tuning = tuning;
+    }
+
+    /**
+     * ActiveMQ Artemisへの接続を初期化
+     */
+    @Override
+    public void initialize() throws JMSException {
+        logger.info("ActiveMQ Artemis接続を初期化（コアプロトコル）: {}", brokerUrl);
+        try {
+            locator = ActiveMQClient.createServerLocator(brokerUrl);
+            locator.setProducerWindowSize(producerWindowSize);
+            if (asyncMode) {
+                // SendAcknowledgementHandlerを呼び出すには送信確認ウィンドウの有効化が必要
+                locator.setConfirmationWindowSize(confirmationWindowSize);
+                locator.setBlockOnDurableSend(false);
+            } else {
+                locator.setBlockOnDurableSend(blockOnDurableSend);
+            }
+            sessionFactory = locator.createSessionFactory();
+
+            session = sessionFactory.createSession(username, password, false, true, true, false,
+                    locator.getAckBatchSize());
+            producer = session.createProducer(address);
+
+            // バッチ送信用のトランザクションセッション
+            txSession = sessionFactory.createSession(username, password, false, false, false, false,
+                    locator.getAckBatchSize());
+            txProducer = txSession.createProducer(address);
+        } catch (Exception e) {
+            closeQuietly();
+            throw toJMSException("ActiveMQ Artemisへの接続に失敗しました: " + brokerUrl, e);
+        }
+        logger.info("ActiveMQ Artemis接続成功（コアプロトコル、プロデューサーウィンドウ: {}バイト）", producerWindowSize);
+    }
+
+    /**
+     * 装置ステータスのリストをまとめて送信（ArtemisMessenger#sendBatch と同じ動作）
+     */
+    @Override
+    public void sendBatch(List<EquipmentStatus> statusList) throws JMSException {
+        if (statusList.isEmpty()) {
+            return;
+        }
+        // 同じグループの装置ステータスが連続するように並べ替える（装置ごとの順序は保たれる）
+        statusList = EquipmentGrouping.arrangeForSend(grouping, messageBuilder.isEnvelopeEnabled(), statusList);
+        // 送信中に設定が変更されても、このバッチは開始時の値で送信する
+        TuningParameters parameters = tuning.current();
+        if (asyncMode) {
+            sendBatchAsync(statusList, parameters);
+            return;
+        }
+
+        int batchSize = parameters.getBatchSize();
+        int maxRetries = parameters.getSendMaxRetries();
+        Exception lastException = null;
+        int committed = 0;
+
+        for (int attempt = 1; attempt <= maxRetries; attempt++) {
+            try {
+                // 接続が初期化されていない場合は再接続
+                if (txSession == null || txProducer == null) {
+                    logger.warn("接続が初期化されていません。再接続を試みます... (試行 {}/{})", attempt, maxRetries);
+                    reconnect();
+                }
+
+                while (committed < statusList.size()) {
+                    int end = Math.min(committed + batchSize, statusList.size());
+                    for (int i = committed; i < end; ) {
+                        int messageEnd = messageEnd(statusList, i, end);
+                        txProducer.send(buildMessage(txSession, statusList, i, messageEnd));
+                        i = messageEnd;
+                    }
+                    txSession.commit();
+
+                    ArtemisMessenger.logSent(statusList, committed, end);
+                    committed = end;
+                }
+
+                return; // 成功したら終了
+
+            } catch (ActiveMQException | JMSException e) {
+                lastException = e;
+                logger.warn("バッチ送信失敗 (試行 {}/{}, 送信済み {}/{}件): {}",
+                        attempt, maxRetries, committed, statusList.size(), e.getMessage());
+                rollbackQuietly();
+
+                if (attempt < maxRetries) {
+                    backoffAndReconnect(attempt, parameters.getRetryBackoffMs(), lastException);
+                }
+            }
+        }
+
+        // すべてのリトライが失敗した場合
+        logger.error("{}回の試行後もバッチ送信に失敗しました (送信済み {}/{}件)",
+                maxRetries, committed, statusList.size());
+        throw toJMSException("バッチ送信に失敗しました", lastException);
+    }
+
+    /**
+     * 装置ステータスのリストを非同期で送信（SendAcknowledgementHandler）
+     * 確認待ちのメッセージ数をasyncWindow件に制限し、全件の送信確認が揃うまで待機する
+     */
+    private void sendBatchAsync(List<EquipmentStatus> statusList, TuningParameters parameters) throws JMSException {
+        int asyncWindow = parameters.getAsyncWindow();
+        // エンベロープ形式の場合は最大batchSize件で1メッセージ（確認待ちの上限はメッセージ数）
+        int batchSize = parameters.getBatchSize();
+        long asyncConfirmTimeoutMs = parameters.getAsyncConfirmTimeoutMs();
+        int maxRetries = parameters.getSendMaxRetries();
+        Exception lastException = null;
+        int confirmed = 0;
+
+        for (int attempt = 1; attempt <= maxRetries; attempt++) {
+            AsyncSendWindow window = new AsyncSendWindow(asyncWindow, confirmed);
+            try {
+                // 接続が初期化されていない場合は再接続
+                if (session == null || producer == null) {
+                    logger.warn("接続が初期化されていません。再接続を試みます... (試行 {}/{})", attempt, maxRetries);
+                    reconnect();
+                }
+
+                for (int i = confirmed; i < statusList.size(); ) {
+                    int end = messageEnd(statusList, i, Math.min(i + batchSize, statusList.size()));
+                    window.acquire(asyncConfirmTimeoutMs);
+                    producer.send(buildMessage(session, statusList, i, end), handlerFor(window, i, end));
+                    i = end;
+                }
+                window.awaitAll(asyncConfirmTimeoutMs);
+
+                ArtemisMessenger.logSent(statusList, confirmed, statusList.size());
+
+                return; // 成功したら終了
+
+            } catch (ActiveMQException | JMSException e) {
+                lastException = e;
+                // 先頭から連続して確認済みのメッセージはスキップし、それ以降を再送する
+                confirmed = window.firstUnconfirmed();
+                logger.warn("非同期送信失敗 (試行 {}/{}, 確認済み {}/{}件): {}",
+                        attempt, maxRetries, confirmed, statusList.size(), e.getMessage());
+
+                if (attempt < maxRetries) {
+                    backoffAndReconnect(attempt, parameters.getRetryBackoffMs(), lastException);
+                }
+            }
+        }
+
+        // すべてのリトライが失敗した場合
+        logger.error("{}回の試行後も非同期送信に失敗しました (確認済み {}/{}件)",
+                maxRetries, confirmed, statusList.size());
+        throw toJMSException("非同期送信に失敗しました", lastException);
+    }
+
+    /**
+     * from から始まるメッセージに含める範囲の終わり（{@link EquipmentGrouping#messageEnd} を参照）
+     */
+    private int messageEnd(List<EquipmentStatus> statusList, int from, int limit) {
+        return EquipmentGrouping.messageEnd(grouping, messageBuilder.isEnvelopeEnabled(), statusList, from, limit);
+    }
+
+    /**
+     * statusList の from から to までのメッセージを作成（従来の形式では from の1件のみ）
+     */
+    private ClientMessage buildMessage(ClientSession target, List<EquipmentStatus> statusList, int from, int to) {
+        return messageBuilder.isEnvelopeEnabled()
+                ? messageBuilder.buildEnvelope(target, statusList, from, to)
+                : messageBuilder.build(target, statusList.get(from));
+    }
+
+    private static SendAcknowledgementHandler handlerFor(AsyncSendWindow window, int from, int to) {
+        return new SendAcknowledgementHandler() {
+            @Override
+            public void sendAcknowledged(Message message) {
+                window.confirm(from, to);
+            }
+
+            @Override
+            public void sendFailed(Message message, Exception e) {
+                window.fail(e);
+            }
+        };
+    }
+
+    /**
+     * 送信失敗後、古い接続をクリーンアップしてバックオフ後に再接続
+     */
+    private void backoffAndReconnect(int attempt, long backoffBaseMs, Exception cause) throws JMSException {
+        if (metrics != null) {
+            metrics.recordSendRetry();
+        }
+        try {
+            // 古い接続をクリーンアップ
+            closeQuietly();
+
+            // バックオフ（試行回数に応じて待機時間を増やす）
+            long backoffMs = backoffBaseMs * attempt;
+            logger.info("{}ms後に再接続を試みます...", backoffMs);
+            Thread.sleep(backoffMs);
+
+            // 再接続
+            reconnect();
+            if (metrics != null) {
+                metrics.recordReconnect();
+            }
+
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            logger.error("再接続待機中に中断されました", ie);
+            throw toJMSException("再接続待機中に中断されました", cause);
+        } catch (Exception re) {
+            logger.error("再接続に失敗しました", re);
+        }
+    }
+
+    /**
+     * 未コミットの送信をロールバック（例外は握りつぶす）
+     */
+    private void rollbackQuietly() {
+        try {
+            if (txSession != null) {
+                txSession.rollback();
+            }
+        } catch (Exception e) {
+            logger.debug("ロールバック時のエラー（無視）: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 再接続を試みる
+     */
+    private void reconnect() throws JMSException {
+        logger.info("ActiveMQ Artemis再接続を試みます: {}", brokerUrl);
+        closeQuietly();
+        initialize();
+        logger.info("ActiveMQ Artemis再接続成功");
+    }
+
+    private static JMSException toJMSException(String message, Exception cause) {
+        if (cause instanceof JMSException) {
+            return (JMSException) cause;
+        }
+        JMSException exception = new JMSException(message + (cause != null ? ": " + cause.getMessage() : ""));
+        if (cause != null) {
+            exception.setLinkedException(cause);
+            exception.initCause(cause);
+        }
+        return exception;
+    }
+
+    /**
+     * 例外を握りつぶしてクローズ（再接続時に使用）
+     */
+    private void closeQuietly() {
+        try {
+            if (txSession != null) {
+                txSession.close();
+            }
+        } catch (Exception e) {
+            logger.debug("Session クローズ時のエラー（無視）: {}", e.getMessage());
+        }
+        txSession = null;
+        txProducer = null;
+
+        try {
+            if (session != null) {
+                session.close();
+            }
+        } catch (Exception e) {
+            logger.debug("Session クローズ時のエラー（無視）: {}", e.getMessage());
+        }
+        session = null;
+        producer = null;
+
+        if (sessionFactory != null) {
+            sessionFactory.close();
+            sessionFactory = null;
+        }
+        if (locator != null) {
+            locator.close();
+            locator = null;
+        }
+    }
+
+    /**
+     * リソースをクローズ
+     */
+    @Override
+    public void close() {
+        closeQuietly();
+        logger.info("ActiveMQ Artemis接続をクローズしました");
+    }
+}
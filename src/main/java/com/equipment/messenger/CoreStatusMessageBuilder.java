@@ -0,0 +1,144 @@
+package com.equipment.messenger;
+
+import org.apache.activemq.artemis.api.core.Message;
+import org.apache.activemq.artemis.api.core.RoutingType;
+import org.apache.activemq.artemis.api.core.SimpleString;
+import org.apache.activemq.artemis.api.core.client.ClientMessage;
+import org.apache.activemq.artemis.api.core.client.ClientSession;
+import org.apache.activemq.artemis.utils.UUIDGenerator;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * コアプロトコル用の装置ステータスメッセージの作成クラス
+ * JMSで送信した場合と同じ内容（TextMessage / BytesMessage、JMSReplyTo、永続、JMSMessageID、JMSTimestamp）の
+ * メッセージを作成するため、受信側はどちらのトランスポートで送信されたかを区別する必要はない
+ *
+ * スレッドセーフではないため、CoreArtemisMessengerの送信スレッドからのみ使用すること
+ */
+public class CoreStatusMessageBuilder {
+
+    // ステータスの種類は少数のため固定上限で十分
+    private static final int MAX_CACHED_PAYLOADS = 256;
+
+    // JMSのDestinationと同じ形式（queue://<名前>）でJMSReplyToを設定する
+    private static final SimpleString REPLY_TO_PROPERTY = SimpleString.toSimpleString("JMSReplyTo");
+
+    private static final SimpleString PROPERTY_SOURCE_TIME =
+            SimpleString.toSimpleString(StatusMessageBuilder.PROPERTY_SOURCE_TIME);
+    private static final SimpleString PROPERTY_FETCH_TIME =
+            SimpleString.toSimpleString(StatusMessageBuilder.PROPERTY_FETCH_TIME);
+    private static final SimpleString PROPERTY_SEND_TIME =
+            SimpleString.toSimpleString(StatusMessageBuilder.PROPERTY_SEND_TIME);
+
+    private final Map<String, SimpleString> replyToCache;
+    private final Map<String, SimpleString> payloadCache;
+    private final boolean latencyProperties;
+    private final StatusEnvelopeCodec envelopeCodec;
+    private final EquipmentGrouping grouping;
+
+    /**
+     * @param latencyProperties trueの場合、レイテンシ計測用のプロパティを付与する
+     * @param envelopeCodec エンベロープ形式で送信する場合の符号化（従来の形式のみ使用する場合はnull）
+     * @param grouping JMSXGroupIDの割り当て（グループを使用しない場合はnull）
+     */
+    public CoreStatusMessageBuilder(int maxCachedDestinations, boolean latencyProperties,
+                                    StatusEnvelopeCodec envelopeCodec, EquipmentGrouping grouping) {
+        this.replyToCache = new StatusMessageBuilder.BoundedCache<>(Math.max(1, maxCachedDestinations));
+        this.payloadCache = new StatusMessageBuilder.BoundedCache<>(MAX_CACHED_PAYLOADS);
+        this.latencyProperties = latencyProperties;
+        this.envelopeCodec = envelopeCodec;
+        this.grouping = grouping;
+    }
+
+    /**
+     * 装置ステータスのメッセージを作成（StatusMessageBuilder#build と同じ内容）
+     */
+    public ClientMessage build(ClientSession session, EquipmentStatus status) {
+        ClientMessage message = newMessage(session, Message.TEXT_TYPE);
+        message.getBodyBuffer().writeNullableSimpleString(payloadFor(status.getStatus()));
+        message.putStringProperty(REPLY_TO_PROPERTY, replyToFor(status.getEqpId()));
+        if (grouping != null) {
+            // JMSのJMSXGroupIDと同じヘッダー
+            message.putStringProperty(Message.HDR_GROUP_ID, grouping.simpleGroupOf(status.getEqpId()));
+        }
+        if (latencyProperties) {
+            message.putLongProperty(PROPERTY_SOURCE_TIME, status.getTimestampTime().getTime());
+            if (status.getFetchTime() > 0) {
+                message.putLongProperty(PROPERTY_FETCH_TIME, status.getFetchTime());
+            }
+            message.putLongProperty(PROPERTY_SEND_TIME, message.getTimestamp());
+        }
+        return message;
+    }
+
+    /**
+     * エンベロープ形式のメッセージを作成（StatusMessageBuilder#buildEnvelope と同じ内容）
+     */
+    public ClientMessage buildEnvelope(ClientSession session, List<EquipmentStatus> statusList, int from, int to) {
+        if (envelopeCodec == null) {
+            throw new IllegalStateException("エンベロープ形式の符号化が設定されていません");
+        }
+        ClientMessage message = newMessage(session, Message.BYTES_TYPE);
+        message.getBodyBuffer().writeBytes(envelopeCodec.encode(statusList, from, to));
+        message.putStringProperty(StatusMessageBuilder.PROPERTY_FORMAT, StatusMessageBuilder.FORMAT_ENVELOPE);
+        message.putIntProperty(StatusMessageBuilder.PROPERTY_ENVELOPE_VERSION, StatusEnvelopeCodec.SCHEMA_VERSION);
+        message.putStringProperty(StatusMessageBuilder.PROPERTY_ENVELOPE_ENCODING, envelopeCodec.getEncoding());
+        message.putStringProperty(StatusMessageBuilder.PROPERTY_ENVELOPE_COMPRESSION, envelopeCodec.isLastCompressed()
+                ? StatusEnvelopeCodec.COMPRESSION_GZIP : StatusEnvelopeCodec.COMPRESSION_NONE);
+        message.putIntProperty(StatusMessageBuilder.PROPERTY_RECORD_COUNT, to - from);
+        if (grouping != null) {
+            message.putStringProperty(Message.HDR_GROUP_ID, grouping.simpleGroupOf(statusList.get(from).getEqpId()));
+        }
+        if (latencyProperties) {
+            long oldestSource = Long.MAX_VALUE;
+            long oldestFetch = Long.MAX_VALUE;
+            for (int i = from; i < to; i++) {
+                EquipmentStatus status = statusList.get(i);
+                oldestSource = Math.min(oldestSource, status.getTimestampTime().getTime());
+                if (status.getFetchTime() > 0) {
+                    oldestFetch = Math.min(oldestFetch, status.getFetchTime());
+                }
+            }
+            message.putLongProperty(PROPERTY_SOURCE_TIME, oldestSource);
+            if (oldestFetch != Long.MAX_VALUE) {
+                message.putLongProperty(PROPERTY_FETCH_TIME, oldestFetch);
+            }
+            message.putLongProperty(PROPERTY_SEND_TIME, message.getTimestamp());
+        }
+        return message;
+    }
+
+    public boolean isEnvelopeEnabled() {
+        return envelopeCodec != null;
+    }
+
+    /**
+     * JMSのメッセージと同じヘッダー（永続、JMSMessageID、JMSTimestamp、anycast）のメッセージを作成
+     */
+    private static ClientMessage newMessage(ClientSession session, byte type) {
+        ClientMessage message = session.createMessage(type, true, 0, System.currentTimeMillis(), (byte) 4);
+        message.setUserID(UUIDGenerator.getInstance().generateUUID());
+        message.setRoutingType(RoutingType.ANYCAST);
+        return message;
+    }
+
+    private SimpleString payloadFor(String status) {
+        SimpleString payload = payloadCache.get(status);
+        if (payload == null) {
+            payload = SimpleString.toSimpleString("currentState=\"" + status + "\"");
+            payloadCache.put(status, payload);
+        }
+        return payload;
+    }
+
+    private SimpleString replyToFor(String eqpId) {
+        SimpleString replyTo = replyToCache.get(eqpId);
+        if (replyTo == null) {
+            replyTo = SimpleString.toSimpleString("queue://EquipmentId=" + eqpId);
+            replyToCache.put(eqpId, replyTo);
+        }
+        return replyTo;
+    }
+}
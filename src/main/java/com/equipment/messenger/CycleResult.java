@@ -0,0 +1,39 @@
+package com.equipment.messenger;
+
+import java.util.Date;
+
+/**
+ * 1回の処理サイクルの結果
+ */
+public class CycleResult {
+    private final int rowCount;
+    private final Date maxTimestamp;
+
+    public CycleResult(int rowCount, Date maxTimestamp) {
+        this.rowCount = rowCount;
+        this.maxTimestamp = maxTimestamp;
+    }
+
+    /**
+     * 処理した装置ステータスの件数（重複抑止で送信しなかったものを含む）
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * 処理した装置ステータスの最大TIMESTAMPTIME（処理がない場合は前回のタイムスタンプ）
+     * パーティション処理では、担当パーティションごとの値のうち最も古いもの
+     */
+    public Date getMaxTimestamp() {
+        return maxTimestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "CycleResult{" +
+                "rowCount=" + rowCount +
+                ", maxTimestamp=" + maxTimestamp +
+                '}';
+    }
+}
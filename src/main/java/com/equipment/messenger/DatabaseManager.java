@@ -1,36 +1,148 @@
 package com.equipment.messenger;
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import oracle.jdbc.OracleConnection;
+import oracle.jdbc.OracleStatement;
+import oracle.jdbc.dcn.DatabaseChangeRegistration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Properties;
+import java.util.Set;
 
 /**
  * Oracleデータベース管理クラス
+ * 接続はコネクションプール（HikariCP）から取得し、Oracleの暗黙的ステートメントキャッシュを使用する
  */
-public class DatabaseManager {
+public class DatabaseManager implements AutoCloseable {
     private static final Logger logger = LoggerFactory.getLogger(DatabaseManager.class);
 
-    private final String jdbcUrl;
-    private final String username;
-    private final String password;
+    // Oracle JDBCの暗黙的ステートメントキャッシュ サイズ指定用の接続プロパティ
+    private static final String ORACLE_IMPLICIT_STATEMENT_CACHE_SIZE = "oracle.jdbc.implicitStatementCacheSize";
+
     private final String equipmentTableName;
+    private final String timestampTableName;
+    // 実行中に変更できるため、クエリごとに現在の値を使用する
+    private volatile int fetchSize;
+    // RTI_TIMESTAMPにPARTITIONID列がある場合の、パーティション化前の行のみを対象にする条件（列の確認後に設定）
+    private volatile String legacyRowFilter;
+    private final PoolMetrics poolMetrics;
+    private final HikariDataSource dataSource;
+    private final boolean ownsDataSource;
+
+    public DatabaseManager(Config config) {
+        this(config, requiredConnections(config));
+    }
+
+    /**
+     * 必要な接続数を指定してコネクションプールを作成
+     * db.pool.max.size が必要な接続数より少ない場合は、必要な接続数まで増やす
+     * （ハートビートや変更通知の登録が接続待ちでタイムアウトし、リースを失うのを防ぐ）
+     *
+     * @param requiredConnections 同時に使用する最大接続数（パイプライン実行時は全パイプラインの合計）
+     */
+    public DatabaseManager(Config config, int requiredConnections) {
+        this.equipmentTableName = config.getEquipmentTableName();
+        this.timestampTableName = config.getTimestampTableName();
+        this.fetchSize = config.getDatabaseFetchSize();
+        this.poolMetrics = new PoolMetrics();
+        this.ownsDataSource = true;
+
+        HikariConfig hikariConfig = new HikariConfig();
+        hikariConfig.setPoolName("EqpStatusMessengerPool");
+        hikariConfig.setJdbcUrl(config.getDatabaseUrl());
+        hikariConfig.setUsername(config.getDatabaseUsername());
+        hikariConfig.setPassword(config.getDatabasePassword());
+        int maxPoolSize = Math.max(config.getDatabasePoolMaxSize(), requiredConnections);
+        if (maxPoolSize > config.getDatabasePoolMaxSize()) {
+            logger.warn("db.pool.max.size（{}）が必要な接続数より少ないため、最大接続数を{}にします",
+                    config.getDatabasePoolMaxSize(), maxPoolSize);
+        }
+        hikariConfig.setMaximumPoolSize(maxPoolSize);
+        hikariConfig.setMinimumIdle(config.getDatabasePoolMinIdle());
+        hikariConfig.setIdleTimeout(config.getDatabasePoolIdleTimeoutMs());
+        hikariConfig.setMaxLifetime(config.getDatabasePoolMaxLifetimeMs());
+        hikariConfig.setConnectionTimeout(config.getDatabasePoolConnectionTimeoutMs());
+        // 借用時にConnection.isValid()で検証（Oracleへのping）
+        hikariConfig.setValidationTimeout(config.getDatabasePoolValidationTimeoutMs());
+        hikariConfig.addDataSourceProperty(ORACLE_IMPLICIT_STATEMENT_CACHE_SIZE,
+                String.valueOf(config.getDatabaseStatementCacheSize()));
+        // DB停止中でも起動でき、次のループで自動的に再接続できるようにする
+        hikariConfig.setInitializationFailTimeout(-1);
+        hikariConfig.setMetricsTrackerFactory(poolMetrics);
+        hikariConfig.setRegisterMbeans(true);
+
+        this.dataSource = new HikariDataSource(hikariConfig);
+        logger.info("コネクションプールを作成 - 最大接続数: {}, 最小アイドル: {}, ステートメントキャッシュ: {}",
+                maxPoolSize, config.getDatabasePoolMinIdle(),
+                config.getDatabaseStatementCacheSize());
+    }
+
+    /**
+     * 1つのパイプラインが同時に使用する最大接続数
+     * メインループ（1）に、リーダーリース・パーティションのハートビート（1）と変更通知の登録（1）を加える
+     */
+    public static int requiredConnections(Config config) {
+        int connections = 1;
+        if (config.isPartitionEnabled() || config.isLeaderEnabled()) {
+            connections++;
+        }
+        if ("dcn".equals(config.getChangeSource())) {
+            connections++;
+        }
+        return connections;
+    }
 
-    public DatabaseManager(String jdbcUrl, String username, String password, String equipmentTableName) {
-        this.jdbcUrl = jdbcUrl;
-        this.username = username;
-        this.password = password;
-        this.equipmentTableName = equipmentTableName;
+    /**
+     * 他のDatabaseManagerのコネクションプールを共有して作成（パイプラインごとのテーブル設定を使用）
+     * プールは共有元が所有するため、close()してもプールはクローズしない
+     */
+    public DatabaseManager(Config config, DatabaseManager shared) {
+        this.equipmentTableName = config.getEquipmentTableName();
+        this.timestampTableName = config.getTimestampTableName();
+        this.fetchSize = config.getDatabaseFetchSize();
+        this.poolMetrics = shared.poolMetrics;
+        this.dataSource = shared.dataSource;
+        this.ownsDataSource = false;
     }
 
     /**
-     * データベース接続を取得
+     * データベース接続をプールから取得
      */
     private Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(jdbcUrl, username, password);
+        return dataSource.getConnection();
+    }
+
+    /**
+     * ステートメントを準備し、所要時間をプールメトリクスに記録
+     * 同じSQLはOracleの暗黙的ステートメントキャッシュから再利用される
+     */
+    private PreparedStatement prepare(Connection conn, String sql) throws SQLException {
+        long start = System.nanoTime();
+        PreparedStatement pstmt = conn.prepareStatement(sql);
+        poolMetrics.recordStatementPrepareNanos(System.nanoTime() - start);
+        return pstmt;
+    }
+
+    /**
+     * コネクションプールのメトリクスを取得
+     */
+    public PoolMetrics getPoolMetrics() {
+        return poolMetrics;
+    }
+
+    /**
+     * 装置ステータス取得時のフェッチサイズを変更（次のクエリから反映）
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
     }
 
     /**
@@ -40,14 +152,14 @@ public class DatabaseManager {
     public Date getOrInitializeTimestamp() throws SQLException {
         try (Connection conn = getConnection()) {
             // まず既存のタイムスタンプを取得
-            String selectSql = "SELECT TIMESTAMPTIME FROM RTI_TIMESTAMP";
-            try (Statement stmt = conn.createStatement();
-                 ResultSet rs = stmt.executeQuery(selectSql)) {
+            String selectSql = "SELECT TIMESTAMPTIME FROM " + timestampTableName + legacyRowFilter(conn);
+            try (PreparedStatement pstmt = prepare(conn, selectSql);
+                 ResultSet rs = pstmt.executeQuery()) {
 
                 if (rs.next()) {
                     Timestamp timestamp = rs.getTimestamp("TIMESTAMPTIME");
                     if (timestamp != null) {
-                        logger.info("既存のタイムスタンプを取得: {}", timestamp);
+                        logger.debug("既存のタイムスタンプを取得: {}", timestamp);
                         return new Date(timestamp.getTime());
                     }
                 }
@@ -55,8 +167,8 @@ public class DatabaseManager {
 
             // データがない場合は現在時間を挿入
             Date currentTime = new Date();
-            String insertSql = "INSERT INTO RTI_TIMESTAMP (TIMESTAMPTIME, UPDATETIME) VALUES (?, ?)";
-            try (PreparedStatement pstmt = conn.prepareStatement(insertSql)) {
+            String insertSql = "INSERT INTO " + timestampTableName + " (TIMESTAMPTIME, UPDATETIME) VALUES (?, ?)";
+            try (PreparedStatement pstmt = prepare(conn, insertSql)) {
                 Timestamp timestamp = new Timestamp(currentTime.getTime());
                 pstmt.setTimestamp(1, timestamp);
                 pstmt.setTimestamp(2, timestamp);
@@ -75,20 +187,17 @@ public class DatabaseManager {
         List<EquipmentStatus> statusList = new ArrayList<>();
 
         String sql = "SELECT EQPID, STATUS, TIMESTAMPTIME FROM " + equipmentTableName +
-                     " WHERE TIMESTAMPTIME > ?";
+                     " WHERE TIMESTAMPTIME > ? ORDER BY TIMESTAMPTIME";
 
         try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = prepare(conn, sql)) {
 
             pstmt.setTimestamp(1, new Timestamp(fromTimestamp.getTime()));
+            pstmt.setFetchSize(fetchSize);
 
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
-                    EquipmentStatus status = new EquipmentStatus();
-                    status.setEqpId(rs.getString("EQPID"));
-                    status.setStatus(rs.getString("STATUS"));
-                    status.setTimestampTime(new Date(rs.getTimestamp("TIMESTAMPTIME").getTime()));
-                    statusList.add(status);
+                    statusList.add(mapRow(rs));
                 }
             }
         }
@@ -103,10 +212,9 @@ public class DatabaseManager {
      * UPDATETIME: 現在時刻
      */
     public void updateTimestamp(Date newTimestamp) throws SQLException {
-        String sql = "UPDATE RTI_TIMESTAMP SET TIMESTAMPTIME = ?, UPDATETIME = ?";
-
         try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = prepare(conn, "UPDATE " + timestampTableName
+                     + " SET TIMESTAMPTIME = ?, UPDATETIME = ?" + legacyRowFilter(conn))) {
 
             Timestamp timestampTime = new Timestamp(newTimestamp.getTime());
             Timestamp updateTime = new Timestamp(System.currentTimeMillis());
@@ -155,22 +263,39 @@ public class DatabaseManager {
      * @throws SQLException ロック取得失敗時（ORA-00054）を含む
      */
     public Date getOrInitializeTimestampWithLock(Connection conn) throws SQLException {
-        // まず既存のタイムスタンプを排他ロック付きで取得
-        String selectSql = "SELECT TIMESTAMPTIME FROM RTI_TIMESTAMP FOR UPDATE NOWAIT";
-        try (Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(selectSql)) {
+        return readOrInitializeTimestamp(conn, true);
+    }
+
+    /**
+     * RTI_TIMESTAMPテーブルからTIMESTAMPTIMEを行ロックなしで取得（トランザクション内）
+     * リーダーリースで処理するインスタンスを1つに限定している場合に使用する
+     *
+     * @param conn トランザクション用のConnection
+     * @return TIMESTAMPTIMEの値
+     */
+    public Date getOrInitializeTimestamp(Connection conn) throws SQLException {
+        return readOrInitializeTimestamp(conn, false);
+    }
+
+    private Date readOrInitializeTimestamp(Connection conn, boolean lock) throws SQLException {
+        // まず既存のタイムスタンプを取得（lockの場合は排他ロック付き）
+        String selectSql = "SELECT TIMESTAMPTIME FROM " + timestampTableName + legacyRowFilter(conn)
+                + (lock ? " FOR UPDATE NOWAIT" : "");
+        try (PreparedStatement pstmt = prepare(conn, selectSql);
+             ResultSet rs = pstmt.executeQuery()) {
 
             if (rs.next()) {
                 Timestamp timestamp = rs.getTimestamp("TIMESTAMPTIME");
                 if (timestamp != null) {
-                    logger.info("既存のタイムスタンプを排他ロック付きで取得: {}", timestamp);
+                    logger.debug(lock ? "既存のタイムスタンプを排他ロック付きで取得: {}" : "既存のタイムスタンプを取得: {}",
+                            timestamp);
                     return new Date(timestamp.getTime());
                 }
             }
         } catch (SQLException e) {
             // ORA-00054: resource busy and acquire with NOWAIT specified
             if (e.getErrorCode() == 54) {
-                logger.warn("RTI_TIMESTAMPテーブルがロックされています（他のプロセスが実行中）");
+                logger.warn("{}テーブルがロックされています（他のプロセスが実行中）", timestampTableName);
                 throw e;
             }
             throw e;
@@ -178,8 +303,8 @@ public class DatabaseManager {
 
         // データがない場合は現在時間を挿入（初回のみ）
         Date currentTime = new Date();
-        String insertSql = "INSERT INTO RTI_TIMESTAMP (TIMESTAMPTIME, UPDATETIME) VALUES (?, ?)";
-        try (PreparedStatement pstmt = conn.prepareStatement(insertSql)) {
+        String insertSql = "INSERT INTO " + timestampTableName + " (TIMESTAMPTIME, UPDATETIME) VALUES (?, ?)";
+        try (PreparedStatement pstmt = prepare(conn, insertSql)) {
             Timestamp timestamp = new Timestamp(currentTime.getTime());
             pstmt.setTimestamp(1, timestamp);
             pstmt.setTimestamp(2, timestamp);
@@ -201,18 +326,15 @@ public class DatabaseManager {
         List<EquipmentStatus> statusList = new ArrayList<>();
 
         String sql = "SELECT EQPID, STATUS, TIMESTAMPTIME FROM " + equipmentTableName +
-                     " WHERE TIMESTAMPTIME > ?";
+                     " WHERE TIMESTAMPTIME > ? ORDER BY TIMESTAMPTIME";
 
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement pstmt = prepare(conn, sql)) {
             pstmt.setTimestamp(1, new Timestamp(fromTimestamp.getTime()));
+            pstmt.setFetchSize(fetchSize);
 
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
-                    EquipmentStatus status = new EquipmentStatus();
-                    status.setEqpId(rs.getString("EQPID"));
-                    status.setStatus(rs.getString("STATUS"));
-                    status.setTimestampTime(new Date(rs.getTimestamp("TIMESTAMPTIME").getTime()));
-                    statusList.add(status);
+                    statusList.add(mapRow(rs));
                 }
             }
         }
@@ -221,6 +343,489 @@ public class DatabaseManager {
         return statusList;
     }
 
+    /**
+     * 指定されたタイムスタンプ以降に更新された装置ステータスを1行ずつhandlerに渡す（トランザクション内）
+     * 結果をリストに保持しないため、件数に関わらずメモリ使用量は一定
+     *
+     * @param conn トランザクション用のConnection
+     * @param fromTimestamp 取得開始タイムスタンプ
+     * @param handler 1行ごとに呼び出される処理
+     * @return 取得した件数
+     */
+    public int streamUpdatedEquipmentStatus(Connection conn, Date fromTimestamp, StatusHandler handler)
+            throws SQLException, InterruptedException {
+        String sql = "SELECT EQPID, STATUS, TIMESTAMPTIME FROM " + equipmentTableName +
+                     " WHERE TIMESTAMPTIME > ? ORDER BY TIMESTAMPTIME";
+        int count = 0;
+
+        try (PreparedStatement pstmt = prepare(conn, sql)) {
+            pstmt.setTimestamp(1, new Timestamp(fromTimestamp.getTime()));
+            pstmt.setFetchSize(fetchSize);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    handler.handle(mapRow(rs));
+                    count++;
+                }
+            }
+        }
+
+        logger.debug("{}件の装置ステータスを取得（ストリーミング）", count);
+        return count;
+    }
+
+    // ========== キーセット方式の分割取得（キャッチアップ用） ==========
+
+    /**
+     * RTI_TIMESTAMPテーブルから複合キーのWatermark (TIMESTAMPTIME, LASTEQPID) を排他ロック付きで取得
+     * データがない場合は現在時刻を挿入して返す
+     *
+     * @param conn トランザクション用のConnection
+     * @return 処理済み位置
+     * @throws SQLException ロック取得失敗時（ORA-00054）を含む
+     */
+    public Watermark getOrInitializeWatermarkWithLock(Connection conn) throws SQLException {
+        return readOrInitializeWatermark(conn, true);
+    }
+
+    /**
+     * RTI_TIMESTAMPテーブルからWatermarkを行ロックなしで取得（トランザクション内）
+     * リーダーリースで処理するインスタンスを1つに限定している場合に使用する
+     */
+    public Watermark getOrInitializeWatermark(Connection conn) throws SQLException {
+        return readOrInitializeWatermark(conn, false);
+    }
+
+    private Watermark readOrInitializeWatermark(Connection conn, boolean lock) throws SQLException {
+        String selectSql = "SELECT TIMESTAMPTIME, LASTEQPID FROM " + timestampTableName + legacyRowFilter(conn) +
+                (lock ? " FOR UPDATE NOWAIT" : "");
+        try (PreparedStatement pstmt = prepare(conn, selectSql);
+             ResultSet rs = pstmt.executeQuery()) {
+
+            if (rs.next()) {
+                Timestamp timestamp = rs.getTimestamp("TIMESTAMPTIME");
+                if (timestamp != null) {
+                    Watermark watermark = new Watermark(new Date(timestamp.getTime()), rs.getString("LASTEQPID"));
+                    logger.debug(lock ? "既存のWatermarkを排他ロック付きで取得: {}" : "既存のWatermarkを取得: {}", watermark);
+                    return watermark;
+                }
+            }
+        } catch (SQLException e) {
+            // ORA-00054: resource busy and acquire with NOWAIT specified
+            if (e.getErrorCode() == 54) {
+                logger.warn("{}テーブルがロックされています（他のプロセスが実行中）", timestampTableName);
+            }
+            throw e;
+        }
+
+        // データがない場合は現在時間を挿入（初回のみ）
+        Date currentTime = new Date();
+        String insertSql = "INSERT INTO " + timestampTableName +
+                " (TIMESTAMPTIME, LASTEQPID, UPDATETIME) VALUES (?, NULL, ?)";
+        try (PreparedStatement pstmt = prepare(conn, insertSql)) {
+            Timestamp timestamp = new Timestamp(currentTime.getTime());
+            pstmt.setTimestamp(1, timestamp);
+            pstmt.setTimestamp(2, timestamp);
+            pstmt.executeUpdate();
+            logger.info("新しいタイムスタンプを挿入: {}", timestamp);
+        }
+
+        return new Watermark(currentTime, null);
+    }
+
+    /**
+     * Watermarkより後の装置ステータスを (TIMESTAMPTIME, EQPID) 順に最大limit件取得（トランザクション内）
+     *
+     * @param conn トランザクション用のConnection
+     * @param from 処理済み位置
+     * @param limit 最大取得件数
+     * @return 装置ステータスのリスト（(TIMESTAMPTIME, EQPID) 昇順）
+     */
+    public List<EquipmentStatus> getEquipmentStatusChunk(Connection conn, Watermark from, int limit) throws SQLException {
+        List<EquipmentStatus> statusList = new ArrayList<>();
+        Timestamp fromTimestamp = new Timestamp(from.getTimestampTime().getTime());
+
+        String sql;
+        if (from.getEqpId() == null) {
+            sql = "SELECT EQPID, STATUS, TIMESTAMPTIME FROM " + equipmentTableName +
+                  " WHERE TIMESTAMPTIME > ?" +
+                  " ORDER BY TIMESTAMPTIME, EQPID FETCH FIRST ? ROWS ONLY";
+        } else {
+            sql = "SELECT EQPID, STATUS, TIMESTAMPTIME FROM " + equipmentTableName +
+                  " WHERE TIMESTAMPTIME > ? OR (TIMESTAMPTIME = ? AND EQPID > ?)" +
+                  " ORDER BY TIMESTAMPTIME, EQPID FETCH FIRST ? ROWS ONLY";
+        }
+
+        try (PreparedStatement pstmt = prepare(conn, sql)) {
+            int index = 1;
+            pstmt.setTimestamp(index++, fromTimestamp);
+            if (from.getEqpId() != null) {
+                pstmt.setTimestamp(index++, fromTimestamp);
+                pstmt.setString(index++, from.getEqpId());
+            }
+            pstmt.setInt(index, limit);
+            pstmt.setFetchSize(Math.min(fetchSize, limit));
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    statusList.add(mapRow(rs));
+                }
+            }
+        }
+
+        logger.debug("{}件の装置ステータスを取得（Watermark: {}）", statusList.size(), from);
+        return statusList;
+    }
+
+    /**
+     * RTI_TIMESTAMPテーブルのWatermarkを更新してトランザクションをコミット
+     *
+     * @param conn トランザクション用のConnection
+     * @param watermark 新しい処理済み位置
+     */
+    public void updateWatermarkAndCommit(Connection conn, Watermark watermark) throws SQLException {
+        String sql = "UPDATE " + timestampTableName + " SET TIMESTAMPTIME = ?, LASTEQPID = ?, UPDATETIME = ?" +
+                legacyRowFilter(conn);
+
+        try (PreparedStatement pstmt = prepare(conn, sql)) {
+            Timestamp timestampTime = new Timestamp(watermark.getTimestampTime().getTime());
+            Timestamp updateTime = new Timestamp(System.currentTimeMillis());
+
+            pstmt.setTimestamp(1, timestampTime);
+            pstmt.setString(2, watermark.getEqpId());
+            pstmt.setTimestamp(3, updateTime);
+            pstmt.executeUpdate();
+
+            logger.debug("Watermarkを更新 - {}, UPDATETIME: {}", watermark, updateTime);
+        }
+
+        conn.commit();
+        logger.debug("トランザクションをコミットしました");
+    }
+
+    // ========== リーダーリース ==========
+
+    /**
+     * リーダーリースを取得または更新（自動コミット）
+     * 自インスタンスが保持しているか、期限切れの場合のみ所有者と期限を更新する。期限はDBの時刻で判定するため、
+     * インスタンス間の時計のずれの影響を受けない。所有者が変わる場合はEPOCHを1増やす
+     *
+     * @param leaseName リース名
+     * @param ownerId 自インスタンスのID
+     * @param leaseMs リースの有効期間（ミリ秒）
+     * @return 更新後のリースの状態（行がない場合は作成する）
+     */
+    public LeaseState acquireOrRenewLease(String leaseName, String ownerId, long leaseMs) throws SQLException {
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(true);
+
+            String updateSql = "UPDATE EQP_LEADER_LEASE" +
+                    " SET EPOCH = CASE WHEN OWNER_ID = ? THEN EPOCH ELSE EPOCH + 1 END, OWNER_ID = ?," +
+                    " EXPIRES_AT = SYSTIMESTAMP + NUMTODSINTERVAL(?, 'SECOND'), UPDATETIME = SYSTIMESTAMP" +
+                    " WHERE LEASE_NAME = ? AND (OWNER_ID = ? OR EXPIRES_AT < SYSTIMESTAMP)";
+            int updated;
+            try (PreparedStatement pstmt = prepare(conn, updateSql)) {
+                pstmt.setString(1, ownerId);
+                pstmt.setString(2, ownerId);
+                pstmt.setDouble(3, leaseMs / 1000.0);
+                pstmt.setString(4, leaseName);
+                pstmt.setString(5, ownerId);
+                updated = pstmt.executeUpdate();
+            }
+
+            String selectSql = "SELECT OWNER_ID, EPOCH FROM EQP_LEADER_LEASE WHERE LEASE_NAME = ?";
+            try (PreparedStatement pstmt = prepare(conn, selectSql)) {
+                pstmt.setString(1, leaseName);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) {
+                        return new LeaseState(rs.getString("OWNER_ID"), rs.getLong("EPOCH"), updated > 0);
+                    }
+                }
+            }
+
+            // 行がない場合は作成（初回のみ。同時に作成された場合は一意制約違反となり、相手が取得する）
+            String insertSql = "INSERT INTO EQP_LEADER_LEASE (LEASE_NAME, OWNER_ID, EPOCH, EXPIRES_AT, UPDATETIME)" +
+                    " VALUES (?, ?, 1, SYSTIMESTAMP + NUMTODSINTERVAL(?, 'SECOND'), SYSTIMESTAMP)";
+            try (PreparedStatement pstmt = prepare(conn, insertSql)) {
+                pstmt.setString(1, leaseName);
+                pstmt.setString(2, ownerId);
+                pstmt.setDouble(3, leaseMs / 1000.0);
+                pstmt.executeUpdate();
+                logger.info("リーダーリースを作成: {}", leaseName);
+                return new LeaseState(ownerId, 1, true);
+            } catch (SQLIntegrityConstraintViolationException e) {
+                return new LeaseState(null, 0, false);
+            }
+        }
+    }
+
+    /**
+     * 自インスタンスが保持しているリーダーリースを期限切れにする（自動コミット）
+     * 待機中のインスタンスは次のハートビートで引き継ぐ
+     */
+    public void releaseLease(String leaseName, String ownerId) throws SQLException {
+        String sql = "UPDATE EQP_LEADER_LEASE SET EXPIRES_AT = SYSTIMESTAMP, UPDATETIME = SYSTIMESTAMP" +
+                " WHERE LEASE_NAME = ? AND OWNER_ID = ?";
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(true);
+            try (PreparedStatement pstmt = prepare(conn, sql)) {
+                pstmt.setString(1, leaseName);
+                pstmt.setString(2, ownerId);
+                pstmt.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * 名前が指定の接頭辞で始まる有効期限内のリースの数（自動コミット）
+     */
+    public int countActiveLeases(String leaseNamePrefix) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM EQP_LEADER_LEASE" +
+                " WHERE LEASE_NAME LIKE ? ESCAPE '\\' AND EXPIRES_AT > SYSTIMESTAMP";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = prepare(conn, sql)) {
+            pstmt.setString(1, escapeLike(leaseNamePrefix) + "%");
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    /**
+     * 名前が指定の接頭辞で始まり、期限切れから指定秒数が経過したリースを削除（自動コミット）
+     */
+    public int deleteExpiredLeases(String leaseNamePrefix, long retentionSeconds) throws SQLException {
+        String sql = "DELETE FROM EQP_LEADER_LEASE" +
+                " WHERE LEASE_NAME LIKE ? ESCAPE '\\' AND EXPIRES_AT < SYSTIMESTAMP - NUMTODSINTERVAL(?, 'SECOND')";
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(true);
+            try (PreparedStatement pstmt = prepare(conn, sql)) {
+                pstmt.setString(1, escapeLike(leaseNamePrefix) + "%");
+                pstmt.setLong(2, retentionSeconds);
+                return pstmt.executeUpdate();
+            }
+        }
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * コミット直前に、自インスタンスがリーダーリースを有効期限内で保持していることを確認（トランザクション内）
+     * リース行を行ロックするため、コミットまでの間に他のインスタンスがリースを引き継ぐことはない
+     *
+     * @param conn トランザクション用のConnection
+     * @param epoch リース取得時のEPOCH
+     * @return 保持している場合はtrue
+     */
+    public boolean verifyLease(Connection conn, String leaseName, String ownerId, long epoch) throws SQLException {
+        String sql = "SELECT EPOCH FROM EQP_LEADER_LEASE" +
+                " WHERE LEASE_NAME = ? AND OWNER_ID = ? AND EPOCH = ? AND EXPIRES_AT > SYSTIMESTAMP FOR UPDATE";
+        try (PreparedStatement pstmt = prepare(conn, sql)) {
+            pstmt.setString(1, leaseName);
+            pstmt.setString(2, ownerId);
+            pstmt.setLong(3, epoch);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    // ========== パーティション処理 ==========
+
+    /**
+     * RTI_TIMESTAMPテーブルからパーティションのTIMESTAMPTIMEを取得（トランザクション内、行ロックなし）
+     * パーティションの行がない場合は作成する。パーティション化前の行（PARTITIONIDがNULL）があれば
+     * そのタイムスタンプを引き継ぎ、なければ現在時刻とする
+     *
+     * @param conn トランザクション用のConnection
+     * @param partition パーティション番号
+     * @return TIMESTAMPTIMEの値
+     */
+    public Date getOrInitializePartitionTimestamp(Connection conn, int partition) throws SQLException {
+        String selectSql = "SELECT TIMESTAMPTIME FROM " + timestampTableName + " WHERE PARTITIONID = ?";
+        try (PreparedStatement pstmt = prepare(conn, selectSql)) {
+            pstmt.setInt(1, partition);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    Timestamp timestamp = rs.getTimestamp("TIMESTAMPTIME");
+                    if (timestamp != null) {
+                        logger.debug("パーティション{}のタイムスタンプを取得: {}", partition, timestamp);
+                        return new Date(timestamp.getTime());
+                    }
+                }
+            }
+        }
+
+        // データがない場合は作成（パーティションごとに初回のみ）
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        String insertSql = "INSERT INTO " + timestampTableName + " (PARTITIONID, TIMESTAMPTIME, UPDATETIME)" +
+                " SELECT ?, NVL(MIN(TIMESTAMPTIME), ?), ? FROM " + timestampTableName + " WHERE PARTITIONID IS NULL";
+        try (PreparedStatement pstmt = prepare(conn, insertSql)) {
+            pstmt.setInt(1, partition);
+            pstmt.setTimestamp(2, now);
+            pstmt.setTimestamp(3, now);
+            pstmt.executeUpdate();
+        }
+        try (PreparedStatement pstmt = prepare(conn, selectSql)) {
+            pstmt.setInt(1, partition);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                Timestamp timestamp = rs.getTimestamp("TIMESTAMPTIME");
+                logger.info("パーティション{}のタイムスタンプを作成: {}", partition, timestamp);
+                return new Date(timestamp.getTime());
+            }
+        }
+    }
+
+    /**
+     * 指定されたタイムスタンプ以降に更新された、パーティションに属する装置ステータスを取得（トランザクション内）
+     * EQPIDのハッシュ値（ORA_HASH）でパーティションを決めるため、同じ装置は常に同じパーティションで処理される
+     *
+     * @param conn トランザクション用のConnection
+     * @param fromTimestamp 取得開始タイムスタンプ
+     * @param partition パーティション番号（0 ～ partitionCount - 1）
+     * @param partitionCount パーティション数
+     * @return 装置ステータスのリスト
+     */
+    public List<EquipmentStatus> getUpdatedEquipmentStatus(Connection conn, Date fromTimestamp,
+                                                           int partition, int partitionCount) throws SQLException {
+        List<EquipmentStatus> statusList = new ArrayList<>();
+        String sql = "SELECT EQPID, STATUS, TIMESTAMPTIME FROM " + equipmentTableName +
+                     " WHERE TIMESTAMPTIME > ? AND ORA_HASH(EQPID, ?) = ? ORDER BY TIMESTAMPTIME";
+
+        try (PreparedStatement pstmt = prepare(conn, sql)) {
+            pstmt.setFetchSize(fetchSize);
+            pstmt.setTimestamp(1, new Timestamp(fromTimestamp.getTime()));
+            pstmt.setInt(2, partitionCount - 1);
+            pstmt.setInt(3, partition);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    statusList.add(mapRow(rs));
+                }
+            }
+        }
+
+        logger.debug("{}件の装置ステータスを取得（パーティション{}）", statusList.size(), partition);
+        return statusList;
+    }
+
+    /**
+     * 指定したパーティションに属する装置のEQPIDを取得（パーティションの引き継ぎ時の重複抑止キャッシュの破棄用）
+     *
+     * @param partitions パーティション番号（0 ～ partitionCount - 1）
+     * @param partitionCount パーティション数
+     */
+    public Set<String> getPartitionEquipmentIds(Collection<Integer> partitions, int partitionCount)
+            throws SQLException {
+        Set<String> eqpIds = new HashSet<>();
+        if (partitions.isEmpty()) {
+            return eqpIds;
+        }
+        StringBuilder sql = new StringBuilder("SELECT DISTINCT EQPID FROM ").append(equipmentTableName)
+                .append(" WHERE ORA_HASH(EQPID, ?) IN (");
+        for (int i = 0; i < partitions.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(')');
+
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = prepare(conn, sql.toString())) {
+            pstmt.setFetchSize(fetchSize);
+            int index = 1;
+            pstmt.setInt(index++, partitionCount - 1);
+            for (int partition : partitions) {
+                pstmt.setInt(index++, partition);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    eqpIds.add(rs.getString(1));
+                }
+            }
+        }
+        return eqpIds;
+    }
+
+    /**
+     * RTI_TIMESTAMPテーブルのパーティションのタイムスタンプを更新してコミット
+     */
+    public void updatePartitionTimestampAndCommit(Connection conn, int partition, Date newTimestamp)
+            throws SQLException {
+        String sql = "UPDATE " + timestampTableName + " SET TIMESTAMPTIME = ?, UPDATETIME = ? WHERE PARTITIONID = ?";
+        try (PreparedStatement pstmt = prepare(conn, sql)) {
+            Date updateTime = new Date();
+            pstmt.setTimestamp(1, new Timestamp(newTimestamp.getTime()));
+            pstmt.setTimestamp(2, new Timestamp(updateTime.getTime()));
+            pstmt.setInt(3, partition);
+            pstmt.executeUpdate();
+            logger.debug("パーティション{}のタイムスタンプを更新 - TIMESTAMPTIME: {}", partition, newTimestamp);
+        }
+        conn.commit();
+        logger.debug("トランザクションをコミットしました");
+    }
+
+    // ========== 変更通知（Database Change Notification） ==========
+
+    /**
+     * 装置ステータステーブルの変更通知を登録
+     * 登録はDB側に保持されるため、登録に使用した接続はプールに返却してよい
+     *
+     * @param options 登録オプション（OracleConnection.DCN_* / NTF_*）
+     * @return 登録（リスナーは呼び出し側で追加する）
+     */
+    public DatabaseChangeRegistration registerEquipmentChangeNotification(Properties options) throws SQLException {
+        try (Connection conn = getConnection()) {
+            OracleConnection oracleConn = conn.unwrap(OracleConnection.class);
+            DatabaseChangeRegistration registration = oracleConn.registerDatabaseChangeNotification(options);
+
+            // 登録したステートメントで参照したテーブルが通知対象になる
+            String sql = "SELECT EQPID FROM " + equipmentTableName + " WHERE ROWNUM = 1";
+            try (Statement stmt = oracleConn.createStatement()) {
+                stmt.unwrap(OracleStatement.class).setDatabaseChangeRegistration(registration);
+                try (ResultSet rs = stmt.executeQuery(sql)) {
+                    while (rs.next()) {
+                        // 結果は使用しない
+                    }
+                }
+            } catch (SQLException e) {
+                oracleConn.unregisterDatabaseChangeNotification(registration);
+                throw e;
+            }
+            return registration;
+        }
+    }
+
+    /**
+     * 変更通知の登録を解除
+     */
+    public void unregisterChangeNotification(DatabaseChangeRegistration registration) throws SQLException {
+        try (Connection conn = getConnection()) {
+            conn.unwrap(OracleConnection.class).unregisterDatabaseChangeNotification(registration);
+        }
+    }
+
+    /**
+     * ResultSetの現在行を装置ステータスに変換
+     */
+    private EquipmentStatus mapRow(ResultSet rs) throws SQLException {
+        EquipmentStatus status = new EquipmentStatus();
+        status.setEqpId(rs.getString("EQPID"));
+        status.setStatus(rs.getString("STATUS"));
+        status.setTimestampTime(new Date(rs.getTimestamp("TIMESTAMPTIME").getTime()));
+        status.setFetchTime(System.currentTimeMillis());
+        return status;
+    }
+
+    /**
+     * ストリーミング取得で1行ごとに呼び出される処理
+     */
+    @FunctionalInterface
+    public interface StatusHandler {
+        void handle(EquipmentStatus status) throws InterruptedException;
+    }
+
     /**
      * RTI_TIMESTAMPテーブルを更新してトランザクションをコミット
      *
@@ -228,9 +833,9 @@ public class DatabaseManager {
      * @param newTimestamp 新しいタイムスタンプ
      */
     public void updateTimestampAndCommit(Connection conn, Date newTimestamp) throws SQLException {
-        String sql = "UPDATE RTI_TIMESTAMP SET TIMESTAMPTIME = ?, UPDATETIME = ?";
+        String sql = "UPDATE " + timestampTableName + " SET TIMESTAMPTIME = ?, UPDATETIME = ?" + legacyRowFilter(conn);
 
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement pstmt = prepare(conn, sql)) {
             Timestamp timestampTime = new Timestamp(newTimestamp.getTime());
             Timestamp updateTime = new Timestamp(System.currentTimeMillis());
 
@@ -247,6 +852,30 @@ public class DatabaseManager {
         logger.debug("トランザクションをコミットしました");
     }
 
+    /**
+     * パーティション処理を使用しない場合のRTI_TIMESTAMPの行の条件
+     * PARTITIONID列がある場合は、パーティションの行（PARTITIONIDあり）を読み書き・ロックしないよう
+     * パーティション化前の行（PARTITIONIDがNULL）のみを対象にする。列がない場合は条件なし
+     * （ローリングアップグレード中に列が追加される場合に備え、列がない間は毎回確認する）
+     */
+    private String legacyRowFilter(Connection conn) throws SQLException {
+        String filter = legacyRowFilter;
+        if (filter != null) {
+            return filter;
+        }
+        try (PreparedStatement pstmt = prepare(conn, "SELECT * FROM " + timestampTableName + " WHERE 1 = 0");
+             ResultSet rs = pstmt.executeQuery()) {
+            ResultSetMetaData metaData = rs.getMetaData();
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                if ("PARTITIONID".equalsIgnoreCase(metaData.getColumnName(i))) {
+                    legacyRowFilter = " WHERE PARTITIONID IS NULL";
+                    return legacyRowFilter;
+                }
+            }
+        }
+        return "";
+    }
+
     /**
      * トランザクションをロールバック
      *
@@ -264,7 +893,7 @@ public class DatabaseManager {
     }
 
     /**
-     * Connectionをクローズ
+     * Connectionをクローズ（プールに返却）
      *
      * @param conn クローズするConnection
      */
@@ -272,10 +901,23 @@ public class DatabaseManager {
         if (conn != null) {
             try {
                 conn.close();
-                logger.debug("データベース接続をクローズしました");
+                logger.debug("データベース接続をプールに返却しました");
             } catch (SQLException e) {
                 logger.error("接続のクローズに失敗しました", e);
             }
         }
     }
+
+    /**
+     * コネクションプールをクローズ
+     */
+    @Override
+    public void close() {
+        if (!ownsDataSource) {
+            return;
+        }
+        logger.info("コネクションプール統計: {}", poolMetrics.summary());
+        dataSource.close();
+        logger.info("コネクションプールをクローズしました");
+    }
 }
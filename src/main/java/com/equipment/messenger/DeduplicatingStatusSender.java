@@ -0,0 +1,34 @@
+package com.equipment.messenger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.JMSException;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * LastStateCacheで状態変化のない送信を抑止してから委譲先に送信する
+ */
+public class DeduplicatingStatusSender implements StatusSender {
+    private static final Logger logger = LoggerFactory.getLogger(DeduplicatingStatusSender.class);
+
+    private final StatusSender delegate;
+    private final LastStateCache lastStateCache;
+
+    public DeduplicatingStatusSender(StatusSender delegate, LastStateCache lastStateCache) {
+        this.delegate = delegate;
+        this.lastStateCache = lastStateCache;
+    }
+
+    @Override
+    public void sendBatch(List<EquipmentStatus> statusList) throws JMSException, IOException {
+        List<EquipmentStatus> toSend = lastStateCache.filter(statusList);
+        if (toSend.size() < statusList.size()) {
+            logger.debug("状態変化のない{}件の送信を抑止しました", statusList.size() - toSend.size());
+        }
+
+        delegate.sendBatch(toSend);
+        lastStateCache.markSent(toSend);
+    }
+}
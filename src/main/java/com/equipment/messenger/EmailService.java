@@ -6,28 +6,75 @@ import org.slf4j.LoggerFactory;
 import javax.mail.*;
 import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeMessage;
-import java.text.SimpleDateFormat;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * メール通知サービスクラス
  * 接続失敗時にメール通知を送信する
+ *
+ * 通知は上限付きのキューに入れ、専用スレッド（mail-dispatcher）が送信するため、呼び出し元（メインループ）は
+ * SMTPサーバーの応答を待たない。SMTP接続は再利用し、接続・読み書きにはタイムアウトを設定する
+ * 同じ種類の通知を最小間隔内に再度受け付けた場合は破棄せずにまとめ、間隔の経過後に1通のダイジェストとして送信する
  */
-public class EmailService {
+public class EmailService implements AutoCloseable {
     private static final Logger logger = LoggerFactory.getLogger(EmailService.class);
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     // 同じエラーの通知を送信する最小間隔（ミリ秒）- デフォルト30分
     private static final long MIN_NOTIFICATION_INTERVAL_MS = 30 * 60 * 1000;
 
+    // ダイジェストに詳細を記載するエラーの件数
+    private static final int MAX_DIGEST_DETAILS = 10;
+
+    // 送信待ちがない場合に、ダイジェストの送信時刻を確認する間隔（ミリ秒）
+    private static final long DISPATCH_POLL_MS = 1000;
+
+    // ダイジェストの送信に失敗した場合の再試行間隔（ミリ秒）
+    private static final long DIGEST_RETRY_MS = 60 * 1000;
+
     private final Config config;
-    private final Map<String, Long> lastNotificationTime = new HashMap<>();
+    // メインループと送信ジャーナルの転送スレッドの両方から参照される
+    private final Map<String, Long> lastNotificationTime = new ConcurrentHashMap<>();
+    private final MessengerMetrics metrics;
+
+    private final BlockingQueue<Alert> queue;
+    // ダイジェストとしてまとめた通知（送信スレッドのみが使用）
+    private final Map<String, Digest> pendingDigests = new LinkedHashMap<>();
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    // 送信スレッドで再利用するSMTPセッションと接続
+    private Session session;
+    private Transport transport;
 
     public EmailService(Config config) {
+        this(config, null);
+    }
+
+    /**
+     * @param metrics 抑止した通知の回数を記録するメトリクス（記録しない場合はnull）
+     */
+    public EmailService(Config config, MessengerMetrics metrics) {
         this.config = config;
+        this.metrics = metrics;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, config.getMailQueueCapacity()));
+        this.dispatcher = new Thread(this::dispatchLoop, "mail-dispatcher");
+        dispatcher.setDaemon(true);
+        if (config.isMailNotificationEnabled()) {
+            dispatcher.start();
+        }
     }
 
     /**
@@ -39,18 +86,8 @@ public class EmailService {
             return;
         }
 
-        String errorKey = "database_connection_failure";
-        if (!shouldSendNotification(errorKey)) {
-            logger.info("最近通知を送信したため、データベース接続失敗通知をスキップします");
-            return;
-        }
-
-        String subject = "[警告] データベース接続失敗 - EqpStatusMessenger";
-        String body = buildDatabaseFailureMessage(exception);
-
-        if (sendEmail(subject, body)) {
-            updateLastNotificationTime(errorKey);
-        }
+        enqueue(new Alert("database_connection_failure", "データベース接続失敗",
+                buildDatabaseFailureMessage(exception), exception));
     }
 
     /**
@@ -62,17 +99,88 @@ public class EmailService {
             return;
         }
 
-        String errorKey = "artemis_connection_failure";
-        if (!shouldSendNotification(errorKey)) {
-            logger.info("最近通知を送信したため、Artemis接続失敗通知をスキップします");
+        enqueue(new Alert("artemis_connection_failure", "Artemis接続失敗",
+                buildArtemisFailureMessage(exception), exception));
+    }
+
+    /**
+     * 通知を送信キューに追加（キューが満杯の場合は破棄し、呼び出し元を待たせない）
+     */
+    private void enqueue(Alert alert) {
+        if (!queue.offer(alert)) {
+            logger.warn("メール通知の送信待ちが上限（{}件）に達したため、{}の通知を破棄します",
+                    config.getMailQueueCapacity(), alert.title);
+            recordSuppressed();
+        }
+    }
+
+    /**
+     * 送信スレッドの処理
+     * キューの通知を送信し、送信時刻に達したダイジェストを送信する。停止時は残りをすべて送信する
+     */
+    private void dispatchLoop() {
+        try {
+            while (running) {
+                Alert alert = queue.poll(DISPATCH_POLL_MS, TimeUnit.MILLISECONDS);
+                if (alert != null) {
+                    dispatch(alert);
+                }
+                flushDigests(false);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        Alert alert;
+        while ((alert = queue.poll()) != null) {
+            dispatch(alert);
+        }
+        flushDigests(true);
+        closeTransport();
+    }
+
+    /**
+     * 通知を送信（最小間隔内の場合はダイジェストにまとめる）
+     */
+    private void dispatch(Alert alert) {
+        Digest digest = pendingDigests.get(alert.errorKey);
+        if (digest != null || !shouldSendNotification(alert.errorKey)) {
+            if (digest == null) {
+                digest = new Digest(alert.title);
+                pendingDigests.put(alert.errorKey, digest);
+            }
+            digest.add(alert);
+            recordSuppressed();
+            logger.info("最近通知を送信したため、{}の通知をまとめて後で送信します（{}件）", alert.title, digest.count);
             return;
         }
 
-        String subject = "[警告] Artemis接続失敗 - EqpStatusMessenger";
-        String body = buildArtemisFailureMessage(exception);
+        String subject = "[警告] " + alert.title + " - EqpStatusMessenger";
+        if (sendEmail(subject, alert.body)) {
+            updateLastNotificationTime(alert.errorKey);
+        }
+    }
 
-        if (sendEmail(subject, body)) {
-            updateLastNotificationTime(errorKey);
+    /**
+     * 最小間隔が経過したダイジェストを送信
+     *
+     * @param force trueの場合は最小間隔に関わらずすべて送信する（停止時）
+     */
+    private void flushDigests(boolean force) {
+        Iterator<Map.Entry<String, Digest>> it = pendingDigests.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Digest> entry = it.next();
+            Digest digest = entry.getValue();
+            if (!force && (!shouldSendNotification(entry.getKey()) || System.currentTimeMillis() < digest.retryAt)) {
+                continue;
+            }
+            String subject = "[警告] " + digest.title + "（" + digest.count + "件） - EqpStatusMessenger";
+            if (sendEmail(subject, digest.buildMessage()) || force) {
+                updateLastNotificationTime(entry.getKey());
+                it.remove();
+            } else {
+                digest.retryAt = System.currentTimeMillis() + DIGEST_RETRY_MS;
+            }
         }
     }
 
@@ -89,6 +197,12 @@ public class EmailService {
         return (currentTime - lastTime) >= MIN_NOTIFICATION_INTERVAL_MS;
     }
 
+    private void recordSuppressed() {
+        if (metrics != null) {
+            metrics.recordSuppressedEmailAlert();
+        }
+    }
+
     /**
      * 最後の通知時刻を更新
      */
@@ -102,7 +216,7 @@ public class EmailService {
     private String buildDatabaseFailureMessage(Exception exception) {
         StringBuilder sb = new StringBuilder();
         sb.append("データベース接続に失敗しました。\n\n");
-        sb.append("発生時刻: ").append(DATE_FORMAT.format(new Date())).append("\n");
+        sb.append("発生時刻: ").append(LocalDateTime.now().format(DATE_FORMAT)).append("\n");
         sb.append("データベースURL: ").append(config.getDatabaseUrl()).append("\n");
         sb.append("ユーザー名: ").append(config.getDatabaseUsername()).append("\n\n");
         sb.append("エラー詳細:\n");
@@ -129,7 +243,7 @@ public class EmailService {
     private String buildArtemisFailureMessage(Exception exception) {
         StringBuilder sb = new StringBuilder();
         sb.append("ActiveMQ Artemis接続に失敗しました。\n\n");
-        sb.append("発生時刻: ").append(DATE_FORMAT.format(new Date())).append("\n");
+        sb.append("発生時刻: ").append(LocalDateTime.now().format(DATE_FORMAT)).append("\n");
         sb.append("ブローカーURL: ").append(config.getArtemisUrl()).append("\n");
         sb.append("ユーザー名: ").append(config.getArtemisUsername()).append("\n");
         sb.append("キュー名: ").append(config.getArtemisQueue()).append("\n\n");
@@ -152,30 +266,12 @@ public class EmailService {
     }
 
     /**
-     * メールを送信
+     * メールを送信（SMTP接続を再利用し、切断されていた場合は1回だけ再接続して再送する）
      */
-    private boolean sendEmail(String subject, String body) {
+    private synchronized boolean sendEmail(String subject, String body) {
         try {
-            // SMTPサーバーの設定
-            Properties props = new Properties();
-            props.put("mail.smtp.host", config.getMailSmtpHost());
-            props.put("mail.smtp.port", String.valueOf(config.getMailSmtpPort()));
-            props.put("mail.smtp.auth", String.valueOf(config.isMailSmtpAuth()));
-            props.put("mail.smtp.starttls.enable", String.valueOf(config.isMailSmtpStartTlsEnable()));
-
-            // セッションの作成
-            Session session = Session.getInstance(props, new Authenticator() {
-                @Override
-                protected PasswordAuthentication getPasswordAuthentication() {
-                    return new PasswordAuthentication(
-                        config.getMailUsername(),
-                        config.getMailPassword()
-                    );
-                }
-            });
-
             // メッセージの作成
-            Message message = new MimeMessage(session);
+            MimeMessage message = new MimeMessage(session());
             message.setFrom(new InternetAddress(config.getMailFrom()));
 
             // 複数の宛先をサポート（カンマ区切り）
@@ -186,22 +282,84 @@ public class EmailService {
             }
             message.setRecipients(Message.RecipientType.TO, addresses);
 
-            message.setSubject(subject);
-            message.setText(body);
+            message.setSubject(subject, "UTF-8");
+            message.setText(body, "UTF-8");
             message.setSentDate(new Date());
+            message.saveChanges();
 
             // メール送信
-            Transport.send(message);
+            try {
+                connectedTransport().sendMessage(message, addresses);
+            } catch (MessagingException e) {
+                // サーバー側で切断された接続を再利用した場合に備えて、新しい接続で1回だけ再送する
+                logger.debug("メール送信に失敗したため、再接続して再送します: {}", e.getMessage());
+                closeTransport();
+                connectedTransport().sendMessage(message, addresses);
+            }
 
             logger.info("メール通知を送信しました - 件名: {}", subject);
             return true;
 
         } catch (MessagingException e) {
             logger.error("メール送信に失敗しました", e);
+            closeTransport();
             return false;
         }
     }
 
+    /**
+     * SMTPセッションを取得（初回のみ作成）
+     */
+    private Session session() {
+        if (session == null) {
+            // SMTPサーバーの設定
+            String timeout = String.valueOf(config.getMailSmtpTimeoutMs());
+            Properties props = new Properties();
+            props.put("mail.smtp.host", config.getMailSmtpHost());
+            props.put("mail.smtp.port", String.valueOf(config.getMailSmtpPort()));
+            props.put("mail.smtp.auth", String.valueOf(config.isMailSmtpAuth()));
+            props.put("mail.smtp.starttls.enable", String.valueOf(config.isMailSmtpStartTlsEnable()));
+            // 応答しないSMTPサーバーで送信スレッドが停止しないよう、接続・読み込み・書き込みにタイムアウトを設定
+            props.put("mail.smtp.connectiontimeout", timeout);
+            props.put("mail.smtp.timeout", timeout);
+            props.put("mail.smtp.writetimeout", timeout);
+
+            session = Session.getInstance(props, new Authenticator() {
+                @Override
+                protected PasswordAuthentication getPasswordAuthentication() {
+                    return new PasswordAuthentication(
+                        config.getMailUsername(),
+                        config.getMailPassword()
+                    );
+                }
+            });
+        }
+        return session;
+    }
+
+    /**
+     * 接続済みのSMTP接続を取得（未接続・切断済みの場合は接続する）
+     */
+    private Transport connectedTransport() throws MessagingException {
+        if (transport == null || !transport.isConnected()) {
+            closeTransport();
+            transport = session().getTransport("smtp");
+            transport.connect();
+        }
+        return transport;
+    }
+
+    private synchronized void closeTransport() {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                logger.debug("SMTP接続クローズ時のエラー（無視）: {}", e.getMessage());
+            }
+            transport = null;
+        }
+    }
+
     /**
      * メール設定をテスト
      */
@@ -214,7 +372,7 @@ public class EmailService {
         try {
             String subject = "[テスト] EqpStatusMessenger メール通知テスト";
             String body = "これはメール通知のテストメッセージです。\n\n" +
-                         "送信時刻: " + DATE_FORMAT.format(new Date()) + "\n\n" +
+                         "送信時刻: " + LocalDateTime.now().format(DATE_FORMAT) + "\n\n" +
                          "このメッセージを受信できた場合、メール通知の設定は正しく動作しています。";
 
             return sendEmail(subject, body);
@@ -223,4 +381,90 @@ public class EmailService {
             return false;
         }
     }
+
+    /**
+     * 送信スレッドを停止（送信待ちの通知とダイジェストを送信してから停止する）
+     */
+    @Override
+    public void close() {
+        running = false;
+        if (!dispatcher.isAlive()) {
+            return;
+        }
+        try {
+            dispatcher.join(config.getMailSmtpTimeoutMs() * 3L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (dispatcher.isAlive()) {
+            logger.warn("メール通知の送信が完了しないまま終了します");
+            dispatcher.interrupt();
+        }
+    }
+
+    /**
+     * 送信待ちの通知
+     */
+    private static class Alert {
+        final String errorKey;
+        final String title;
+        final String body;
+        final String summary;
+        final LocalDateTime time = LocalDateTime.now();
+
+        Alert(String errorKey, String title, String body, Exception exception) {
+            this.errorKey = errorKey;
+            this.title = title;
+            this.body = body;
+            this.summary = exception.getClass().getName() + ": " + exception.getMessage();
+        }
+    }
+
+    /**
+     * 最小間隔内にまとめた同じ種類の通知
+     */
+    private static class Digest {
+        final String title;
+        final List<Alert> details = new ArrayList<>();
+        int count;
+        LocalDateTime first;
+        LocalDateTime last;
+        Alert latest;
+        // 送信に失敗した場合の次回の送信時刻（エポックミリ秒）
+        long retryAt;
+
+        Digest(String title) {
+            this.title = title;
+        }
+
+        void add(Alert alert) {
+            count++;
+            if (first == null) {
+                first = alert.time;
+            }
+            last = alert.time;
+            latest = alert;
+            if (details.size() < MAX_DIGEST_DETAILS) {
+                details.add(alert);
+            }
+        }
+
+        String buildMessage() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("前回の通知以降、").append(title).append("が").append(count).append("件発生しました。\n\n");
+            sb.append("期間: ").append(first.format(DATE_FORMAT)).append(" 〜 ").append(last.format(DATE_FORMAT))
+              .append("\n\n");
+            sb.append("エラー一覧");
+            if (count > details.size()) {
+                sb.append("（最初の").append(details.size()).append("件）");
+            }
+            sb.append(":\n");
+            for (Alert alert : details) {
+                sb.append("- ").append(alert.time.format(DATE_FORMAT)).append(" ").append(alert.summary).append("\n");
+            }
+            sb.append("\n===== 最新のエラー =====\n\n");
+            sb.append(latest.body);
+            return sb.toString();
+        }
+    }
 }
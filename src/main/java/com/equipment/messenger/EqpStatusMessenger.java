@@ -1,12 +1,20 @@
 package com.equipment.messenger;
 
+import ch.qos.logback.classic.LoggerContext;
+import org.slf4j.ILoggerFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.jms.JMSException;
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 装置ステータスメッセンジャー メインクラス
@@ -17,34 +25,138 @@ public class EqpStatusMessenger {
 
     private final Config config;
     private final DatabaseManager dbManager;
-    private final ArtemisMessenger artemisMessenger;
+    private final StripedStatusSender artemisSender;
+    private final MappedLastStateStore lastStateStore;
+    private final LastStateCache lastStateCache;
+    private final StatusSender statusSender;
+    private final OutboxJournal outboxJournal;
+    private final OutboxForwarder outboxForwarder;
     private final EmailService emailService;
+    private final StreamingPipeline streamingPipeline;
+    private final ChangeSource changeSource;
+    private final boolean eventDriven;
+    private final AdaptivePollingScheduler scheduler;
+    private final LeaderLease leaderLease;
+    private final PartitionManager partitionManager;
+    private final MessengerMetrics metrics;
+    private final LiveTuning tuning;
+    // 最後にデータベース・スケジューラに反映した設定値
+    private TuningParameters appliedTuning;
     private volatile boolean running = true;
+    // 停止要求で待機中のスリープを直ちに終了する
+    private final CountDownLatch stopRequested = new CountDownLatch(1);
+    // 初期化が完了したか（PipelineRunnerは初期化に失敗した場合に再度呼び出す）
+    private boolean initialized;
+    // 前回のサイクル集計の出力時点のエラー回数
+    private long reportedCycleFailures;
+
+    public EqpStatusMessenger(Config config) throws IOException {
+        this(config, new DatabaseManager(config));
+    }
 
-    public EqpStatusMessenger(Config config) {
+    /**
+     * @param dbManager 使用するDatabaseManager（パイプライン実行時はコネクションプールを共有したもの）
+     */
+    public EqpStatusMessenger(Config config, DatabaseManager dbManager) throws IOException {
         this.config = config;
 
-        this.dbManager = new DatabaseManager(
-                config.getDatabaseUrl(),
-                config.getDatabaseUsername(),
-                config.getDatabasePassword(),
-                config.getEquipmentTableName()
-        );
+        this.dbManager = dbManager;
+
+        this.metrics = new MessengerMetrics(config.getPipelineName().isEmpty() ? "default" : config.getPipelineName());
+        if (config.isMetricsJmxEnabled()) {
+            metrics.registerMBean();
+        }
+
+        // 処理間隔・バッチサイズなどは実行中に変更できる（設定ファイルの監視・JMX）
+        this.tuning = new LiveTuning(config);
+        if (config.isMetricsJmxEnabled()) {
+            tuning.registerMBean();
+        }
+        this.appliedTuning = tuning.current();
+        dbManager.setFetchSize(appliedTuning.getFetchSize());
+
+        this.artemisSender = new StripedStatusSender(config, metrics, tuning);
+
+        this.emailService = new EmailService(config, metrics);
+
+        // 送信ジャーナルが有効な場合は、ジャーナルへの記録をもって送信完了とし、
+        // Artemisへは転送スレッドが送信する
+        StatusSender deliverySender;
+        if (config.isOutboxEnabled()) {
+            this.outboxJournal = new OutboxJournal(new File(config.getOutboxPath()),
+                    config.getOutboxSizeMb() * 1024L * 1024L, config.isOutboxForce());
+            this.outboxForwarder = new OutboxForwarder(outboxJournal, artemisSender, emailService, config);
+            deliverySender = new JournalingStatusSender(outboxJournal);
+        } else {
+            this.outboxJournal = null;
+            this.outboxForwarder = null;
+            deliverySender = artemisSender;
+        }
+
+        // 重複抑止が有効な場合は、キャッシュで抑止してから送信する
+        // 行ロックで複数のインスタンスが交互に処理する場合、他のインスタンスが送信した状態変化をキャッシュが知らず
+        // 誤って抑止するため、処理するインスタンスが1つに限られる場合のみ使用する
+        boolean singleProcessor = config.isLeaderEnabled() || config.isPartitionEnabled()
+                || config.isDedupSingleInstance();
+        if (config.isDedupEnabled() && !singleProcessor) {
+            logger.warn("重複抑止を無効にします: 複数のインスタンスが交互に処理する可能性があるため、"
+                    + "リーダーリース・パーティション処理を使用するか、インスタンスが1つのみの場合は"
+                    + "app.dedup.single.instance=true を指定してください");
+        }
+        if (config.isDedupEnabled() && singleProcessor) {
+            // 保存先が有効な場合は、前回の送信状態を読み込んで再開する
+            this.lastStateStore = config.isDedupStoreEnabled()
+                    ? new MappedLastStateStore(new File(config.getDedupStorePath()),
+                            config.getDedupStoreSlots(), config.isDedupStoreForce())
+                    : null;
+            this.lastStateCache = new LastStateCache(config.isDedupCoalesceEnabled(), lastStateStore);
+            this.statusSender = new DeduplicatingStatusSender(deliverySender, lastStateCache);
+        } else {
+            this.lastStateStore = null;
+            this.lastStateCache = null;
+            this.statusSender = deliverySender;
+        }
+
+        this.streamingPipeline = config.isStreamingEnabled()
+                ? new StreamingPipeline(dbManager, statusSender, config, tuning)
+                : null;
 
-        this.artemisMessenger = new ArtemisMessenger(
-                config.getArtemisUrl(),
-                config.getArtemisUsername(),
-                config.getArtemisPassword(),
-                config.getArtemisQueue()
-        );
+        this.eventDriven = "dcn".equals(config.getChangeSource());
+        this.changeSource = eventDriven
+                ? new OracleChangeNotificationSource(dbManager, config)
+                : new PollingChangeSource();
 
-        this.emailService = new EmailService(config);
+        this.scheduler = config.isAdaptiveIntervalEnabled()
+                ? new AdaptivePollingScheduler(appliedTuning.getAdaptiveIntervalMinMs(),
+                        appliedTuning.getIntervalMs(), appliedTuning.getAdaptiveIntervalBacklogRows())
+                : null;
+
+        // パーティション処理はパーティションごとのリースで排他するため、リーダーリースとは併用しない
+        if (config.isPartitionEnabled()) {
+            if (config.isLeaderEnabled()) {
+                logger.warn("パーティション処理が有効なため、リーダーリースは使用しません");
+            }
+            if (config.isCatchUpEnabled() || config.isStreamingEnabled()) {
+                logger.warn("パーティション処理が有効なため、キャッチアップ処理・ストリーミング処理は使用しません");
+            }
+            this.partitionManager = new PartitionManager(dbManager, config,
+                    lastStateCache != null ? lastStateCache::invalidate : null);
+            this.leaderLease = null;
+        } else {
+            this.partitionManager = null;
+            this.leaderLease = config.isLeaderEnabled()
+                    ? new LeaderLease(dbManager, config, lastStateCache != null ? lastStateCache::invalidate : null)
+                    : null;
+        }
     }
 
     /**
      * アプリケーションを初期化
      */
     public void initialize() throws Exception {
+        if (initialized) {
+            return;
+        }
         logger.info("===== EqpStatusMessenger 初期化開始 =====");
 
         // データベース接続テスト
@@ -54,90 +166,146 @@ public class EqpStatusMessenger {
             throw dbException;
         }
 
+        // 変更検知を開始
+        changeSource.start();
+
         // ActiveMQ Artemis接続初期化
         try {
-            artemisMessenger.initialize();
+            artemisSender.initialize();
         } catch (JMSException e) {
             emailService.sendArtemisConnectionFailureNotification(e);
             throw e;
         }
 
+        // 送信ジャーナルの転送を開始（前回の未送信分があれば続きから送信）
+        if (outboxForwarder != null) {
+            outboxForwarder.start();
+        }
+
+        // レイテンシの区間ごとの出力を開始
+        metrics.getLatencyRecorder().start(config.getLatencyReportSeconds());
+
+        // 設定ファイルの変更の監視を開始
+        if (config.isConfigWatchEnabled()) {
+            tuning.startWatching();
+        }
+
+        // リーダーリースのハートビートを開始
+        if (leaderLease != null) {
+            leaderLease.start();
+        }
+        if (partitionManager != null) {
+            partitionManager.start();
+        }
+
+        initialized = true;
         logger.info("===== 初期化完了 =====");
     }
 
     /**
      * メインループを実行
-     * SELECT FOR UPDATE NOWAITによる排他制御を使用
+     * SELECT FOR UPDATE NOWAITによる排他制御、またはリーダーリースを使用
      */
     public void run() {
         logger.info("===== EqpStatusMessenger 実行開始 =====");
-        logger.info("処理間隔: {}秒", config.getIntervalSeconds());
-        logger.info("排他制御: SELECT FOR UPDATE NOWAIT使用");
-
-        // シャットダウンフックを登録
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            logger.info("シャットダウンシグナルを受信しました");
-            running = false;
-        }));
+        if (eventDriven) {
+            logger.info("変更検知: Oracle変更通知（DCN）、安全策のポーリング間隔: {}秒",
+                    config.getChangeSourceSafetyNetSeconds());
+        } else {
+            logger.info("処理間隔: {}秒", tuning.current().getIntervalSeconds());
+        }
+        if (partitionManager != null) {
+            logger.info("排他制御: パーティションごとのリース使用（インスタンス: {}、パーティション数: {}）",
+                    partitionManager.getOwnerId(), partitionManager.getPartitionCount());
+        } else if (leaderLease != null) {
+            logger.info("排他制御: リーダーリース使用（インスタンス: {}）", leaderLease.getOwnerId());
+        } else {
+            logger.info("排他制御: SELECT FOR UPDATE NOWAIT使用");
+        }
 
         while (running) {
             Connection conn = null;
+            long cycleStart = System.nanoTime();
+            applyTuning();
             try {
-                // トランザクション開始
-                conn = dbManager.beginTransaction();
-
-                // RTI_TIMESTAMPテーブルからタイムスタンプを排他ロック付きで取得
-                Date lastTimestamp = dbManager.getOrInitializeTimestampWithLock(conn);
-
-                // 前回のタイムスタンプ以降に更新された装置ステータスを取得
-                List<EquipmentStatus> statusList = dbManager.getUpdatedEquipmentStatus(conn, lastTimestamp);
-
-                // 最新のタイムスタンプを記録
-                Date maxTimestamp = lastTimestamp;
+                // リーダーリース使用時は、リーダーになるまで待機
+                if (leaderLease != null && !leaderLease.awaitLeadership(leaderLease.getHeartbeatMs())) {
+                    continue;
+                }
+                // パーティション処理時は、いずれかのパーティションの担当になるまで待機
+                if (partitionManager != null && !partitionManager.awaitPartitions(partitionManager.getHeartbeatMs())) {
+                    continue;
+                }
 
-                if (statusList.isEmpty()) {
-                    logger.debug("更新された装置ステータスはありません");
-                    // データがない場合はlastTimestampのまま
+                CycleResult result;
+                if (partitionManager != null) {
+                    // パーティションごとにトランザクションをコミット（Connectionはメソッド内で管理）
+                    result = processPartitions();
+                } else if (config.isCatchUpEnabled()) {
+                    // 分割ごとにトランザクションをコミット（Connectionはメソッド内で管理）
+                    result = processCatchUp();
                 } else {
-                    logger.info("{}件の装置ステータスを処理します", statusList.size());
-
-                    // 各装置ステータスをActiveMQ Artemisに送信
-                    for (EquipmentStatus status : statusList) {
-                        artemisMessenger.sendEquipmentStatus(status);
-
-                        // 最新のタイムスタンプを更新
-                        if (status.getTimestampTime().after(maxTimestamp)) {
-                            maxTimestamp = status.getTimestampTime();
-                        }
+                    // トランザクション開始
+                    conn = dbManager.beginTransaction();
+
+                    // RTI_TIMESTAMPテーブルからタイムスタンプを取得（リーダーリース使用時以外は排他ロック付き）
+                    long lockStart = System.nanoTime();
+                    Date lastTimestamp = leaderLease != null
+                            ? dbManager.getOrInitializeTimestamp(conn)
+                            : dbManager.getOrInitializeTimestampWithLock(conn);
+                    metrics.recordLockAcquire(System.nanoTime() - lockStart);
+
+                    // 前回のタイムスタンプ以降に更新された装置ステータスを取得して送信
+                    result = processUpdates(conn, lastTimestamp);
+
+                    // 処理中にリースを失った場合は、引き継いだリーダーが再処理するためコミットしない
+                    if (!holdsLease(conn)) {
+                        dbManager.rollback(conn);
+                        dbManager.closeConnection(conn);
+                        conn = null;
+                        continue;
                     }
-                }
 
-                // RTI_TIMESTAMPテーブルを更新してコミット（データがない場合もlastTimestampで更新）
-                dbManager.updateTimestampAndCommit(conn, maxTimestamp);
-                dbManager.closeConnection(conn);
-                conn = null;
-
-                logger.info("処理完了 - 次回チェックタイムスタンプ: {}", maxTimestamp);
+                    // RTI_TIMESTAMPテーブルを更新してコミット（データがない場合もlastTimestampで更新）
+                    long commitStart = System.nanoTime();
+                    dbManager.updateTimestampAndCommit(conn, result.getMaxTimestamp());
+                    metrics.recordCommit(System.nanoTime() - commitStart);
+                    dbManager.closeConnection(conn);
+                    conn = null;
+                }
+                Date maxTimestamp = result.getMaxTimestamp();
+                long cycleNanos = System.nanoTime() - cycleStart;
+                metrics.updateWatermark(maxTimestamp);
+                metrics.recordCycle(cycleNanos);
+
+                logCycleSummary(result, cycleNanos);
+                logger.debug("コネクションプール統計: {}", dbManager.getPoolMetrics().summary());
+                if (lastStateCache != null) {
+                    logger.debug("重複抑止統計: {}", lastStateCache.summary());
+                }
 
-                // 指定秒数スリープ
-                Thread.sleep(config.getIntervalSeconds() * 1000L);
+                // 次の変更通知を待機（ポーリングの場合は指定秒数スリープ）
+                changeSource.awaitChange(nextWaitMs(result));
 
             } catch (SQLException e) {
                 // ORA-00054: resource busy and acquire with NOWAIT specified
                 if (e.getErrorCode() == 54) {
-                    logger.warn("他のプロセスが実行中のため、ロックを取得できませんでした。30秒後に再試行します。");
+                    metrics.recordLockConflict();
+                    int lockRetrySeconds = tuning.current().getLockRetrySeconds();
+                    logger.warn("他のプロセスが実行中のため、ロックを取得できませんでした。{}秒後に再試行します。",
+                            lockRetrySeconds);
                     dbManager.rollback(conn);
                     dbManager.closeConnection(conn);
                     conn = null;
 
                     try {
-                        // 30秒待って再試行
-                        Thread.sleep(30 * 1000L);
+                        pause(lockRetrySeconds * 1000L);
                     } catch (InterruptedException ie) {
                         logger.warn("スリープが中断されました", ie);
                         running = false;
                     }
                 } else {
+                    metrics.recordCycleFailure();
                     logger.error("データベースエラーが発生しました", e);
                     emailService.sendDatabaseConnectionFailureNotification(e);
                     dbManager.rollback(conn);
@@ -145,13 +313,14 @@ public class EqpStatusMessenger {
                     conn = null;
 
                     try {
-                        Thread.sleep(config.getIntervalSeconds() * 1000L);
+                        pause(tuning.current().getIntervalMs());
                     } catch (InterruptedException ie) {
                         logger.warn("スリープが中断されました", ie);
                         running = false;
                     }
                 }
             } catch (JMSException e) {
+                metrics.recordCycleFailure();
                 logger.error("メッセージング エラーが発生しました", e);
                 emailService.sendArtemisConnectionFailureNotification(e);
                 dbManager.rollback(conn);
@@ -159,7 +328,7 @@ public class EqpStatusMessenger {
                 conn = null;
 
                 try {
-                    Thread.sleep(config.getIntervalSeconds() * 1000L);
+                    pause(tuning.current().getIntervalMs());
                 } catch (InterruptedException ie) {
                     logger.warn("スリープが中断されました", ie);
                     running = false;
@@ -170,13 +339,14 @@ public class EqpStatusMessenger {
                 dbManager.closeConnection(conn);
                 running = false;
             } catch (Exception e) {
+                metrics.recordCycleFailure();
                 logger.error("予期しないエラーが発生しました", e);
                 dbManager.rollback(conn);
                 dbManager.closeConnection(conn);
                 conn = null;
 
                 try {
-                    Thread.sleep(config.getIntervalSeconds() * 1000L);
+                    pause(tuning.current().getIntervalMs());
                 } catch (InterruptedException ie) {
                     logger.warn("スリープが中断されました", ie);
                     running = false;
@@ -193,26 +363,392 @@ public class EqpStatusMessenger {
         logger.info("===== EqpStatusMessenger 終了 =====");
     }
 
+    /**
+     * 設定値が変更されていれば、データベースのフェッチサイズと適応的ポーリングの範囲に反映
+     * サイクルの開始時に呼び出す（送信の設定値はArtemisMessengerが送信ごとに取得する）
+     */
+    private void applyTuning() {
+        TuningParameters parameters = tuning.current();
+        if (parameters == appliedTuning) {
+            return;
+        }
+        dbManager.setFetchSize(parameters.getFetchSize());
+        if (scheduler != null) {
+            scheduler.reconfigure(parameters.getAdaptiveIntervalMinMs(), parameters.getIntervalMs(),
+                    parameters.getAdaptiveIntervalBacklogRows());
+        }
+        appliedTuning = parameters;
+    }
+
+    /**
+     * サイクルの集計（件数・所要時間・前回の完了以降のエラー回数）を1行で出力
+     * 送信がなくエラーもないサイクルはDEBUGで出力する
+     */
+    private void logCycleSummary(CycleResult result, long cycleNanos) {
+        long failures = metrics.getCycleFailures() - reportedCycleFailures;
+        reportedCycleFailures += failures;
+        if (result.getRowCount() > 0 || failures > 0) {
+            logger.info("サイクル完了 - {}件, {}ms, エラー {}回, 次回チェックタイムスタンプ: {}",
+                    result.getRowCount(), TimeUnit.NANOSECONDS.toMillis(cycleNanos), failures,
+                    result.getMaxTimestamp());
+        } else if (logger.isDebugEnabled()) {
+            logger.debug("サイクル完了 - 0件, {}ms, 次回チェックタイムスタンプ: {}",
+                    TimeUnit.NANOSECONDS.toMillis(cycleNanos), result.getMaxTimestamp());
+        }
+    }
+
+    /**
+     * リーダーリース使用時に、コミット直前にリースを保持していることを確認
+     * リース未使用時は常にtrue（RTI_TIMESTAMPの行ロックで排他済み）
+     */
+    private boolean holdsLease(Connection conn) throws SQLException {
+        if (leaderLease == null || leaderLease.verify(conn)) {
+            return true;
+        }
+        logger.warn("リーダーリースを失ったため、処理中のトランザクションをロールバックします");
+        return false;
+    }
+
+    /**
+     * メインループの停止を要求（実行中のサイクルの完了後に終了する）
+     */
+    public void stop() {
+        running = false;
+        stopRequested.countDown();
+        changeSource.wakeUp();
+    }
+
+    /**
+     * 指定時間待機（停止が要求された場合は直ちに戻る）
+     */
+    void pause(long millis) throws InterruptedException {
+        stopRequested.await(millis, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 処理メトリクス（監視用）
+     */
+    public MessengerMetrics getMetrics() {
+        return metrics;
+    }
+
+    public PoolMetrics getPoolMetrics() {
+        return dbManager.getPoolMetrics();
+    }
+
+    /**
+     * 実行中に変更できる設定値
+     */
+    public LiveTuning getTuning() {
+        return tuning;
+    }
+
+    /**
+     * 正常終了したサイクルの後、次のサイクルまでの最大待機時間
+     * 適応的ポーリングが有効な場合は直近のサイクルの件数から計算する
+     */
+    private long nextWaitMs(CycleResult result) {
+        if (scheduler != null) {
+            long intervalMs = scheduler.onCycleCompleted(result.getRowCount());
+            logger.debug("次のサイクルまでの間隔: {}ms", intervalMs);
+            if (eventDriven) {
+                // 変更通知の場合は、未処理データが残っている間のみ待機を省略
+                return intervalMs == 0 ? 0 : config.getChangeSourceSafetyNetSeconds() * 1000L;
+            }
+            return intervalMs;
+        }
+        if (eventDriven) {
+            return config.getChangeSourceSafetyNetSeconds() * 1000L;
+        }
+        return tuning.current().getIntervalMs();
+    }
+
+    /**
+     * 現在のポーリング間隔（ミリ秒、監視用）
+     */
+    public long getCurrentIntervalMs() {
+        if (scheduler != null) {
+            return scheduler.getCurrentIntervalMs();
+        }
+        return tuning.current().getIntervalMs();
+    }
+
+    /**
+     * キャッチアップ処理
+     * Watermarkより後の装置ステータスを (TIMESTAMPTIME, EQPID) 順に最大chunkSize件ずつ送信し、
+     * 分割ごとに独立したトランザクションでWatermarkを更新してコミットする
+     * 途中で停止しても、次回は最後にコミットした分割の続きから再開する
+     */
+    private CycleResult processCatchUp() throws Exception {
+        int chunkSize = tuning.current().getCatchUpChunkSize();
+        int totalCount = 0;
+        int fetchedCount;
+        Watermark watermark;
+        // RTI_TIMESTAMPにコミット済みの位置（ロールバックしたチャンクは含めない）
+        Watermark committedWatermark = null;
+
+        do {
+            Connection conn = null;
+            try {
+                conn = dbManager.beginTransaction();
+                long lockStart = System.nanoTime();
+                watermark = leaderLease != null
+                        ? dbManager.getOrInitializeWatermark(conn)
+                        : dbManager.getOrInitializeWatermarkWithLock(conn);
+                metrics.recordLockAcquire(System.nanoTime() - lockStart);
+                committedWatermark = watermark;
+
+                long queryStart = System.nanoTime();
+                List<EquipmentStatus> chunk = dbManager.getEquipmentStatusChunk(conn, watermark, chunkSize);
+                fetchedCount = chunk.size();
+                metrics.recordQuery(System.nanoTime() - queryStart, fetchedCount);
+
+                if (!chunk.isEmpty()) {
+                    statusSender.sendBatch(chunk);
+                    // 取得はWatermark順のため、最後の行が新しいWatermarkになる
+                    watermark = Watermark.of(chunk.get(chunk.size() - 1));
+                }
+
+                if (!holdsLease(conn)) {
+                    dbManager.rollback(conn);
+                    break;
+                }
+                long commitStart = System.nanoTime();
+                dbManager.updateWatermarkAndCommit(conn, watermark);
+                metrics.recordCommit(System.nanoTime() - commitStart);
+                committedWatermark = watermark;
+                if (fetchedCount > 0) {
+                    totalCount += fetchedCount;
+                    logger.debug("{}件の装置ステータスを処理しました（キャッチアップ、累計 {}件）", fetchedCount, totalCount);
+                }
+            } catch (Exception e) {
+                dbManager.rollback(conn);
+                throw e;
+            } finally {
+                dbManager.closeConnection(conn);
+            }
+        } while (fetchedCount == chunkSize && running);
+
+        if (totalCount == 0) {
+            logger.debug("更新された装置ステータスはありません");
+        }
+        return new CycleResult(totalCount, committedWatermark.getTimestampTime());
+    }
+
+    /**
+     * パーティション処理
+     * 担当している各パーティションについて、パーティションのタイムスタンプ以降に更新された装置ステータスを
+     * 取得・送信し、パーティションごとに独立したトランザクションでタイムスタンプを更新してコミットする
+     *
+     * @return 送信件数と、コミットしたパーティションのうち最も古いタイムスタンプ
+     *         （処理済みタイムスタンプの遅延は、最も遅れているパーティションで判断する）
+     */
+    private CycleResult processPartitions() throws Exception {
+        int totalCount = 0;
+        Date oldestTimestamp = null;
+
+        for (int partition : partitionManager.getOwnedPartitions()) {
+            if (!running) {
+                break;
+            }
+            Connection conn = null;
+            try {
+                conn = dbManager.beginTransaction();
+                long lockStart = System.nanoTime();
+                Date lastTimestamp = dbManager.getOrInitializePartitionTimestamp(conn, partition);
+                metrics.recordLockAcquire(System.nanoTime() - lockStart);
+
+                long queryStart = System.nanoTime();
+                List<EquipmentStatus> statusList = dbManager.getUpdatedEquipmentStatus(conn, lastTimestamp,
+                        partition, partitionManager.getPartitionCount());
+                metrics.recordQuery(System.nanoTime() - queryStart, statusList.size());
+                Date partitionMaxTimestamp = lastTimestamp;
+                if (!statusList.isEmpty()) {
+                    statusSender.sendBatch(statusList);
+                    for (EquipmentStatus status : statusList) {
+                        if (status.getTimestampTime().after(partitionMaxTimestamp)) {
+                            partitionMaxTimestamp = status.getTimestampTime();
+                        }
+                    }
+                    logger.debug("{}件の装置ステータスを処理しました（パーティション{}）", statusList.size(), partition);
+                }
+
+                // 処理中に担当を失った場合は、引き継いだインスタンスが再処理するためコミットしない
+                if (!partitionManager.verify(conn, partition)) {
+                    logger.warn("パーティション{}の担当を失ったため、処理中のトランザクションをロールバックします", partition);
+                    dbManager.rollback(conn);
+                    continue;
+                }
+                long commitStart = System.nanoTime();
+                dbManager.updatePartitionTimestampAndCommit(conn, partition, partitionMaxTimestamp);
+                metrics.recordCommit(System.nanoTime() - commitStart);
+
+                totalCount += statusList.size();
+                if (oldestTimestamp == null || partitionMaxTimestamp.before(oldestTimestamp)) {
+                    oldestTimestamp = partitionMaxTimestamp;
+                }
+            } catch (Exception e) {
+                dbManager.rollback(conn);
+                throw e;
+            } finally {
+                dbManager.closeConnection(conn);
+            }
+        }
+
+        if (totalCount == 0) {
+            logger.debug("更新された装置ステータスはありません");
+        }
+        return new CycleResult(totalCount, oldestTimestamp);
+    }
+
+    /**
+     * 前回のタイムスタンプ以降に更新された装置ステータスを取得し、ActiveMQ Artemisに送信
+     * 戻った時点で全件がブローカーで確定しているため、呼び出し側はその後にタイムスタンプを更新する
+     */
+    private CycleResult processUpdates(Connection conn, Date lastTimestamp) throws Exception {
+        if (streamingPipeline != null) {
+            // 取得と送信を並行して行う
+            CycleResult result = streamingPipeline.process(conn, lastTimestamp);
+            metrics.recordRowsFetched(result.getRowCount());
+            if (result.getRowCount() == 0) {
+                logger.debug("更新された装置ステータスはありません");
+            } else {
+                logger.debug("{}件の装置ステータスを処理しました（ストリーミング）", result.getRowCount());
+            }
+            return result;
+        }
+
+        long queryStart = System.nanoTime();
+        List<EquipmentStatus> statusList = dbManager.getUpdatedEquipmentStatus(conn, lastTimestamp);
+        metrics.recordQuery(System.nanoTime() - queryStart, statusList.size());
+
+        // 最新のタイムスタンプを記録
+        Date maxTimestamp = lastTimestamp;
+
+        if (statusList.isEmpty()) {
+            logger.debug("更新された装置ステータスはありません");
+            // データがない場合はlastTimestampのまま
+        } else {
+            logger.debug("{}件の装置ステータスを処理します", statusList.size());
+
+            // 装置ステータスをActiveMQ Artemisにまとめて送信
+            statusSender.sendBatch(statusList);
+
+            // 最新のタイムスタンプを更新
+            for (EquipmentStatus status : statusList) {
+                if (status.getTimestampTime().after(maxTimestamp)) {
+                    maxTimestamp = status.getTimestampTime();
+                }
+            }
+        }
+
+        return new CycleResult(statusList.size(), maxTimestamp);
+    }
+
     /**
      * リソースをクリーンアップ
      */
     public void shutdown() {
         logger.info("リソースをクリーンアップしています...");
-        artemisMessenger.close();
+        if (leaderLease != null) {
+            leaderLease.close();
+        }
+        if (partitionManager != null) {
+            partitionManager.close();
+        }
+        if (outboxForwarder != null) {
+            outboxForwarder.close();
+        }
+        if (outboxJournal != null) {
+            outboxJournal.close();
+        }
+        if (lastStateCache != null) {
+            logger.info("重複抑止統計: {}", lastStateCache.summary());
+        }
+        if (lastStateStore != null) {
+            lastStateStore.close();
+        }
+        if (streamingPipeline != null) {
+            streamingPipeline.close();
+        }
+        changeSource.close();
+        emailService.close();
+        artemisSender.close();
+        dbManager.close();
+        metrics.getLatencyRecorder().close();
+        metrics.unregisterMBean();
+        tuning.close();
     }
 
     /**
      * メインメソッド
      */
+    /**
+     * シャットダウンフックを登録
+     * 停止を要求した後、メインスレッドのクリーンアップ（リースの解放・通知メールの送信・
+     * レイテンシの最終集計など）が完了するまで最大 timeoutSeconds 秒待機し、ログを出力し切ってから終了する
+     */
+    private static void registerShutdownHook(Runnable stopAction, CountDownLatch finished, int timeoutSeconds) {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            logger.info("シャットダウンシグナルを受信しました");
+            stopAction.run();
+            try {
+                if (!finished.await(timeoutSeconds, TimeUnit.SECONDS)) {
+                    logger.warn("クリーンアップが{}秒以内に完了しないため、完了を待たずに終了します", timeoutSeconds);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            stopLogging();
+        }, "shutdown-hook"));
+    }
+
+    /**
+     * ログ出力を停止（非同期アペンダーのキューに残ったログを出力する）
+     */
+    private static void stopLogging() {
+        ILoggerFactory loggerFactory = LoggerFactory.getILoggerFactory();
+        if (loggerFactory instanceof LoggerContext) {
+            ((LoggerContext) loggerFactory).stop();
+        }
+    }
+
     public static void main(String[] args) {
         EqpStatusMessenger messenger = null;
+        MetricsHttpServer metricsServer = null;
+        boolean failed = false;
+        // メインスレッドのクリーンアップの完了（シャットダウンフックが待機する）
+        CountDownLatch finished = new CountDownLatch(1);
+        boolean shutdownHookRegistered = false;
 
         try {
             // 設定をロード
             Config config = new Config();
 
+            // 複数のパイプラインを定義している場合は、パイプラインごとに並行して実行
+            if (!config.getPipelineNames().isEmpty()) {
+                PipelineRunner runner = new PipelineRunner(config);
+                registerShutdownHook(runner::stop, finished, config.getShutdownTimeoutSeconds());
+                shutdownHookRegistered = true;
+                runner.run();
+                return;
+            }
+
             // メッセンジャーを作成
             messenger = new EqpStatusMessenger(config);
+            registerShutdownHook(messenger::stop, finished, config.getShutdownTimeoutSeconds());
+            shutdownHookRegistered = true;
+
+            // メトリクスのHTTP公開を開始
+            if (config.isMetricsHttpEnabled()) {
+                metricsServer = new MetricsHttpServer(config.getMetricsHttpPort(),
+                        Collections.singletonList(messenger.getMetrics()), messenger.getPoolMetrics());
+                metricsServer.start();
+            }
 
             // 初期化
             messenger.initialize();
@@ -222,11 +758,23 @@ public class EqpStatusMessenger {
 
         } catch (Exception e) {
             logger.error("アプリケーションの起動に失敗しました", e);
-            System.exit(1);
+            failed = true;
         } finally {
+            if (metricsServer != null) {
+                metricsServer.close();
+            }
+            // 起動失敗の通知メールは送信スレッドで送るため、shutdown()で送信を待ってから終了する
             if (messenger != null) {
                 messenger.shutdown();
             }
+            finished.countDown();
+            // シャットダウンフックの登録前に失敗した場合は、ここでログを出力し切る
+            if (!shutdownHookRegistered) {
+                stopLogging();
+            }
+        }
+        if (failed) {
+            System.exit(1);
         }
     }
 }
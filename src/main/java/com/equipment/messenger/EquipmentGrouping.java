@@ -0,0 +1,130 @@
+package com.equipment.messenger;
+
+import org.apache.activemq.artemis.api.core.SimpleString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * メッセージグループ（JMSXGroupID）の割り当て
+ * 同じグループのメッセージはブローカーが常に同じ受信者に配信するため、受信側を複数にしても装置ごとの順序が保たれる
+ *
+ * - バケット数が0: EQPIDをそのままグループIDにする
+ * - バケット数がN: EQPIDのハッシュ値でN個のグループ（bucket-0 〜 bucket-(N-1)）に振り分ける
+ *   （グループ数を抑えることで、ブローカーのグループ管理の負荷と受信者への割り当ての偏りを小さくする）
+ */
+public class EquipmentGrouping {
+    private static final Logger logger = LoggerFactory.getLogger(EquipmentGrouping.class);
+
+    private final int buckets;
+    private final String[] bucketNames;
+    private final SimpleString[] bucketSimpleNames;
+
+    /**
+     * @param buckets グループのバケット数（0の場合はEQPIDごとのグループ）
+     */
+    public EquipmentGrouping(int buckets) {
+        this.buckets = Math.max(0, buckets);
+        this.bucketNames = new String[this.buckets];
+        this.bucketSimpleNames = new SimpleString[this.buckets];
+        for (int i = 0; i < this.buckets; i++) {
+            bucketNames[i] = "bucket-" + i;
+            bucketSimpleNames[i] = SimpleString.toSimpleString(bucketNames[i]);
+        }
+    }
+
+    /**
+     * 設定からグループの割り当てを作成（グループを使用しない場合はnull）
+     */
+    public static EquipmentGrouping fromConfig(Config config) {
+        if (!config.isArtemisGroupEnabled()) {
+            return null;
+        }
+        EquipmentGrouping grouping = new EquipmentGrouping(config.getArtemisGroupBuckets());
+        if (grouping.buckets == 0 && StatusMessageBuilder.FORMAT_ENVELOPE.equals(config.getArtemisMessageFormat())) {
+            logger.warn("エンベロープ形式でEQPIDごとのグループを使用するため、1メッセージには同じ装置のステータスのみをまとめます"
+                    + "（artemis.group.buckets の設定を推奨）");
+        }
+        return grouping;
+    }
+
+    /**
+     * 送信する装置ステータスの並べ替え
+     * エンベロープ形式でグループを使用する場合は、同じグループの装置ステータスが連続するように並べ替える
+     *
+     * @param grouping グループの割り当て（グループを使用しない場合はnull）
+     * @param envelope エンベロープ形式で送信するか
+     */
+    public static List<EquipmentStatus> arrangeForSend(EquipmentGrouping grouping, boolean envelope,
+                                                       List<EquipmentStatus> statusList) {
+        return grouping != null && envelope ? grouping.arrange(statusList) : statusList;
+    }
+
+    /**
+     * from から始まるメッセージに含める範囲の終わり（含まない、最大 limit）
+     * 従来の形式では1件、エンベロープ形式では limit まで（グループを使用する場合は同じグループの範囲まで）
+     *
+     * @param grouping グループの割り当て（グループを使用しない場合はnull）
+     * @param envelope エンベロープ形式で送信するか
+     * @param statusList arrangeForSend() で並べ替えたリスト
+     */
+    public static int messageEnd(EquipmentGrouping grouping, boolean envelope,
+                                 List<EquipmentStatus> statusList, int from, int limit) {
+        if (!envelope) {
+            return from + 1;
+        }
+        return grouping != null ? grouping.runEnd(statusList, from, limit) : limit;
+    }
+
+    /**
+     * 装置のグループID
+     */
+    public String groupOf(String eqpId) {
+        return buckets == 0 ? eqpId : bucketNames[bucketOf(eqpId)];
+    }
+
+    /**
+     * 装置のグループID（コアプロトコル用）
+     */
+    public SimpleString simpleGroupOf(String eqpId) {
+        return buckets == 0 ? SimpleString.toSimpleString(eqpId) : bucketSimpleNames[bucketOf(eqpId)];
+    }
+
+    private int bucketOf(String eqpId) {
+        return Math.floorMod(eqpId.hashCode(), buckets);
+    }
+
+    /**
+     * エンベロープ形式で送信するため、同じグループの装置ステータスが連続するように並べ替えたリストを作成
+     * 安定ソートのため、同じ装置（同じグループ）の中では元の順序が保たれる
+     */
+    public List<EquipmentStatus> arrange(List<EquipmentStatus> statusList) {
+        List<EquipmentStatus> arranged = new ArrayList<>(statusList);
+        if (buckets == 0) {
+            arranged.sort(Comparator.comparing(EquipmentStatus::getEqpId));
+        } else {
+            arranged.sort(Comparator.comparingInt(status -> bucketOf(status.getEqpId())));
+        }
+        return arranged;
+    }
+
+    /**
+     * from から始まる同じグループの範囲の終わり（含まない、最大 limit）
+     * arrange() で並べ替えたリストに対して使用する
+     */
+    public int runEnd(List<EquipmentStatus> arranged, int from, int limit) {
+        String group = groupOf(arranged.get(from).getEqpId());
+        int end = from + 1;
+        while (end < limit && group.equals(groupOf(arranged.get(end).getEqpId()))) {
+            end++;
+        }
+        return end;
+    }
+
+    public int getBuckets() {
+        return buckets;
+    }
+}
@@ -9,6 +9,8 @@ public class EquipmentStatus {
     private String eqpId;
     private String status;
     private Date timestampTime;
+    // DBから取得した時刻（エポックミリ秒、不明な場合は0）
+    private long fetchTime;
 
     public EquipmentStatus() {
     }
@@ -43,6 +45,14 @@ public class EquipmentStatus {
         this.timestampTime = timestampTime;
     }
 
+    public long getFetchTime() {
+        return fetchTime;
+    }
+
+    public void setFetchTime(long fetchTime) {
+        this.fetchTime = fetchTime;
+    }
+
     @Override
     public String toString() {
         return "EquipmentStatus{" +
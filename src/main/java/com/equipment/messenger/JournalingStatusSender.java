@@ -0,0 +1,22 @@
+package com.equipment.messenger;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 装置ステータスを送信ジャーナルに追記する送信先
+ * ジャーナルへの記録をもって送信完了とし、ArtemisへはOutboxForwarderが別スレッドで送信する
+ */
+public class JournalingStatusSender implements StatusSender {
+
+    private final OutboxJournal journal;
+
+    public JournalingStatusSender(OutboxJournal journal) {
+        this.journal = journal;
+    }
+
+    @Override
+    public void sendBatch(List<EquipmentStatus> statusList) throws IOException {
+        journal.append(statusList);
+    }
+}
@@ -0,0 +1,171 @@
+package com.equipment.messenger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 装置ごとの最後に送信したステータスのキャッシュ
+ * ステータスが変わっていない送信（TIMESTAMPTIMEのみの更新など）を抑止し、
+ * 設定により1サイクル内の同一装置の更新を最終状態にまとめる
+ * MappedLastStateStoreを指定した場合は送信状態をファイルにも保存し、再起動後に復元する
+ */
+public class LastStateCache {
+
+    private final boolean coalesce;
+    private final MappedLastStateStore store;
+    private final Map<String, String> lastSentStatus = new ConcurrentHashMap<>();
+    // ステータス文字列は種類が少ないため、同じ値のインスタンスを共有してメモリを節約
+    private final Map<String, String> statusPool = new ConcurrentHashMap<>();
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder suppressed = new LongAdder();
+
+    public LastStateCache(boolean coalesce) {
+        this(coalesce, null);
+    }
+
+    /**
+     * @param coalesce 1サイクル内の同一装置の更新を最終状態にまとめる
+     * @param store 送信状態の保存先（nullの場合はメモリ上のみ）。指定した場合は保存済みの状態を読み込む
+     */
+    public LastStateCache(boolean coalesce, MappedLastStateStore store) {
+        this.coalesce = coalesce;
+        this.store = store;
+        if (store != null) {
+            store.loadInto(this);
+        }
+    }
+
+    /**
+     * 送信が必要な装置ステータスのみを抽出
+     * 1サイクル内の更新は、キャッシュに未反映の送信予定の状態とも比較する
+     *
+     * @param statusList 取得した装置ステータス
+     * @return 送信すべき装置ステータス
+     */
+    public List<EquipmentStatus> filter(List<EquipmentStatus> statusList) {
+        received.add(statusList.size());
+
+        List<EquipmentStatus> candidates = coalesce ? coalesceToFinalState(statusList) : statusList;
+        coalesced.add(statusList.size() - candidates.size());
+
+        List<EquipmentStatus> toSend = new ArrayList<>(candidates.size());
+        Map<String, String> pendingStatus = new HashMap<>();
+        for (EquipmentStatus status : candidates) {
+            String previous = pendingStatus.containsKey(status.getEqpId())
+                    ? pendingStatus.get(status.getEqpId())
+                    : lastSentStatus.get(status.getEqpId());
+            if (status.getStatus() != null && status.getStatus().equals(previous)) {
+                suppressed.increment();
+                continue;
+            }
+            pendingStatus.put(status.getEqpId(), status.getStatus());
+            toSend.add(status);
+        }
+        return toSend;
+    }
+
+    /**
+     * 装置ごとに最新のTIMESTAMPTIMEの更新のみを残す（同時刻の場合は後の行）
+     * 順序は各装置の最終更新の出現順
+     */
+    private List<EquipmentStatus> coalesceToFinalState(List<EquipmentStatus> statusList) {
+        Map<String, EquipmentStatus> finalState = new LinkedHashMap<>();
+        for (EquipmentStatus status : statusList) {
+            EquipmentStatus current = finalState.get(status.getEqpId());
+            if (current == null || !status.getTimestampTime().before(current.getTimestampTime())) {
+                finalState.remove(status.getEqpId());
+                finalState.put(status.getEqpId(), status);
+            }
+        }
+        return new ArrayList<>(finalState.values());
+    }
+
+    /**
+     * 送信が完了した装置ステータスをキャッシュに反映
+     */
+    public void markSent(List<EquipmentStatus> sentList) {
+        for (EquipmentStatus status : sentList) {
+            if (status.getStatus() == null) {
+                lastSentStatus.remove(status.getEqpId());
+            } else {
+                lastSentStatus.put(status.getEqpId(), statusPool.computeIfAbsent(status.getStatus(), s -> s));
+            }
+            if (store != null) {
+                store.put(status.getEqpId(), status.getStatus(), status.getTimestampTime());
+            }
+        }
+    }
+
+    /**
+     * 保存済みの送信状態を復元（起動時の読み込み用）
+     */
+    void restore(String eqpId, String status) {
+        if (status != null) {
+            lastSentStatus.put(eqpId, statusPool.computeIfAbsent(status, s -> s));
+        }
+    }
+
+    /**
+     * キャッシュと保存先の送信状態をすべて破棄
+     * 他のインスタンスが送信した可能性がある場合（パーティションの引き継ぎ時など）に呼び出す。
+     * 破棄後の最初の送信は抑止されない
+     */
+    public void invalidate() {
+        lastSentStatus.clear();
+        if (store != null) {
+            store.clearAll();
+        }
+    }
+
+    /**
+     * 指定した装置のキャッシュと保存先の送信状態を破棄
+     * パーティションを新たに担当したときに、そのパーティションの装置のみを対象に呼び出す
+     */
+    public void invalidate(Collection<String> eqpIds) {
+        for (String eqpId : eqpIds) {
+            lastSentStatus.remove(eqpId);
+            if (store != null) {
+                store.remove(eqpId);
+            }
+        }
+    }
+
+    /**
+     * 最後に送信したステータスを取得（未送信の場合はnull）
+     */
+    public String getLastSentStatus(String eqpId) {
+        return lastSentStatus.get(eqpId);
+    }
+
+    public int size() {
+        return lastSentStatus.size();
+    }
+
+    public long getReceivedCount() {
+        return received.sum();
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    public long getSuppressedCount() {
+        return suppressed.sum();
+    }
+
+    /**
+     * ログ出力用のサマリー文字列
+     */
+    public String summary() {
+        return String.format("取得 %d件, 集約 %d件, 抑止（状態変化なし） %d件, キャッシュ装置数 %d",
+                getReceivedCount(), getCoalescedCount(), getSuppressedCount(), size());
+    }
+}
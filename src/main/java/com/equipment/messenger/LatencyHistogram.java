@@ -0,0 +1,73 @@
+package com.equipment.messenger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 所要時間の固定バケット・ヒストグラム（Prometheusのhistogram形式で出力する）
+ * 記録はロックなしで複数スレッドから行える
+ */
+public class LatencyHistogram {
+
+    // バケットの上限（ミリ秒）
+    private static final double[] BUCKET_BOUNDS_MS = {
+            1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000
+    };
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS_MS.length + 1];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long elapsedNanos) {
+        double elapsedMs = elapsedNanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        int index = 0;
+        while (index < BUCKET_BOUNDS_MS.length && elapsedMs > BUCKET_BOUNDS_MS[index]) {
+            index++;
+        }
+        buckets[index].increment();
+        count.increment();
+        sumNanos.add(elapsedNanos);
+        maxNanos.accumulate(elapsedNanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getAverageMillis() {
+        long n = count.sum();
+        return n == 0 ? 0.0 : sumNanos.sum() / (double) n / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public double getMaxMillis() {
+        return maxNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Prometheusのテキスト形式で系列を出力（単位は秒。HELP/TYPE行は呼び出し側で1回だけ出力する）
+     *
+     * @param name メトリクス名
+     * @param labels ラベル（例: pipeline="areaA"）
+     */
+    public void writePrometheus(StringBuilder out, String name, String labels) {
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+            cumulative += buckets[i].sum();
+            out.append(name).append("_bucket{").append(labels).append(",le=\"")
+                    .append(BUCKET_BOUNDS_MS[i] / 1000.0).append("\"} ").append(cumulative).append('\n');
+        }
+        cumulative += buckets[BUCKET_BOUNDS_MS.length].sum();
+        out.append(name).append("_bucket{").append(labels).append(",le=\"+Inf\"} ").append(cumulative).append('\n');
+        out.append(name).append("_sum{").append(labels).append("} ")
+                .append(sumNanos.sum() / (double) TimeUnit.SECONDS.toNanos(1)).append('\n');
+        out.append(name).append("_count{").append(labels).append("} ").append(cumulative).append('\n');
+    }
+}
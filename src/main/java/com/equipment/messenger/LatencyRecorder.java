@@ -0,0 +1,138 @@
+package com.equipment.messenger;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * メッセージごと・サイクルごとのレイテンシをHDRヒストグラムで記録し、一定間隔ごとにパーセンタイルを出力
+ *
+ * - 発生→送信確定: 装置ステータスのTIMESTAMPTIMEから、ブローカーでの送信確定まで（DBサーバーとの時刻差を含む）
+ * - 取得→送信確定: DBから取得してから、ブローカーでの送信確定まで（プロセス内の滞留時間）
+ * - サイクル: 1サイクルの所要時間
+ *
+ * 記録は複数スレッドからロックなしで行え、出力時は前回の出力以降の区間のみを集計する
+ */
+public class LatencyRecorder implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(LatencyRecorder.class);
+
+    // 有効桁数（値域は自動的に拡張される）
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final String pipeline;
+    private final Recorder endToEnd = new Recorder(SIGNIFICANT_DIGITS);
+    private final Recorder inProcess = new Recorder(SIGNIFICANT_DIGITS);
+    private final Recorder cycle = new Recorder(SIGNIFICANT_DIGITS);
+
+    // 区間集計用（出力スレッドのみが使用）
+    private Histogram endToEndInterval;
+    private Histogram inProcessInterval;
+    private Histogram cycleInterval;
+
+    // 直近の区間の発生→送信確定（マイクロ秒、JMX用）
+    private volatile long lastEndToEndP50Micros;
+    private volatile long lastEndToEndP99Micros;
+    private volatile long lastEndToEndP999Micros;
+
+    private ScheduledExecutorService reporter;
+
+    public LatencyRecorder(String pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    /**
+     * 送信が確定した装置ステータスのレイテンシを記録
+     *
+     * @param nowMillis 送信確定時刻（エポックミリ秒）
+     */
+    public void recordDelivered(List<EquipmentStatus> statusList, long nowMillis) {
+        for (EquipmentStatus status : statusList) {
+            // DBサーバーとの時刻差で負になる場合は0とする
+            endToEnd.recordValue(Math.max(0, nowMillis - status.getTimestampTime().getTime()) * 1000);
+            if (status.getFetchTime() > 0) {
+                inProcess.recordValue(Math.max(0, nowMillis - status.getFetchTime()) * 1000);
+            }
+        }
+    }
+
+    public void recordCycle(long elapsedNanos) {
+        cycle.recordValue(Math.max(0, TimeUnit.NANOSECONDS.toMicros(elapsedNanos)));
+    }
+
+    /**
+     * 一定間隔ごとの出力を開始（既に開始している場合は何もしない）
+     *
+     * @param intervalSeconds 出力間隔（秒、0以下の場合は出力しない）
+     */
+    public synchronized void start(int intervalSeconds) {
+        if (reporter != null || intervalSeconds <= 0) {
+            return;
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "latency-report-" + pipeline);
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(this::report, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 前回の出力以降の区間のパーセンタイルをログに出力
+     */
+    synchronized void report() {
+        endToEndInterval = endToEnd.getIntervalHistogram(endToEndInterval);
+        inProcessInterval = inProcess.getIntervalHistogram(inProcessInterval);
+        cycleInterval = cycle.getIntervalHistogram(cycleInterval);
+
+        if (endToEndInterval.getTotalCount() > 0) {
+            lastEndToEndP50Micros = endToEndInterval.getValueAtPercentile(50);
+            lastEndToEndP99Micros = endToEndInterval.getValueAtPercentile(99);
+            lastEndToEndP999Micros = endToEndInterval.getValueAtPercentile(99.9);
+        }
+        if (cycleInterval.getTotalCount() == 0 && endToEndInterval.getTotalCount() == 0) {
+            return;
+        }
+        logger.info("レイテンシ [{}] 発生→送信確定: {}, 取得→送信確定: {}, サイクル: {}", pipeline,
+                format(endToEndInterval), format(inProcessInterval), format(cycleInterval));
+    }
+
+    private static String format(Histogram histogram) {
+        if (histogram.getTotalCount() == 0) {
+            return "0件";
+        }
+        return String.format("%d件 p50 %.1fms / p99 %.1fms / p999 %.1fms / 最大 %.1fms",
+                histogram.getTotalCount(),
+                histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMaxValue() / 1000.0);
+    }
+
+    public double getLastEndToEndP50Millis() {
+        return lastEndToEndP50Micros / 1000.0;
+    }
+
+    public double getLastEndToEndP99Millis() {
+        return lastEndToEndP99Micros / 1000.0;
+    }
+
+    public double getLastEndToEndP999Millis() {
+        return lastEndToEndP999Micros / 1000.0;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+            // 最後の区間を出力
+            report();
+        }
+    }
+}
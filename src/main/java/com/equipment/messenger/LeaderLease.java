@@ -0,0 +1,220 @@
+package com.equipment.messenger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * リーダーリースによるアクティブ/スタンバイ制御
+ * ハートビートスレッドがEQP_LEADER_LEASEのリースを定期的に取得・更新し、リースを保持している
+ * インスタンスのみがメインループを実行する。リーダーが停止するとリースが期限切れになり、
+ * スタンバイが次のハートビートで引き継ぐ（最大でリース期間 + ハートビート間隔）
+ *
+ * DB側の期限切れより前にリーダーであることをやめるよう、ローカルでもハートビート開始時刻から
+ * リース期間が経過した時点でリーダーではないものとして扱う
+ */
+public class LeaderLease implements Runnable, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(LeaderLease.class);
+
+    private final DatabaseManager dbManager;
+    private final String leaseName;
+    private final String ownerId;
+    private final long leaseMs;
+    private final long heartbeatMs;
+    private final Runnable onLeadershipAcquired;
+    private final Thread thread;
+
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder takeovers = new LongAdder();
+    private final LongAdder losses = new LongAdder();
+    private final LongAdder heartbeatFailures = new LongAdder();
+
+    private volatile boolean running = true;
+    private boolean started;
+    private volatile boolean leader;
+    private volatile long epoch;
+    private volatile long validUntilNanos;
+    private String lastObservedOwner;
+
+    /**
+     * @param onLeadershipAcquired リーダーになるたびに（起動後の最初の取得を含む）、処理を開始する前に呼び出す処理
+     *                             （他のインスタンスがリーダーの間に送信した状態との食い違いを防ぐため、
+     *                             重複抑止のキャッシュを破棄する。不要な場合はnull）
+     */
+    public LeaderLease(DatabaseManager dbManager, Config config, Runnable onLeadershipAcquired) {
+        this.dbManager = dbManager;
+        this.onLeadershipAcquired = onLeadershipAcquired;
+        this.leaseName = config.getLeaderLeaseName();
+        this.ownerId = config.getInstanceId();
+        this.leaseMs = config.getLeaderLeaseMs();
+        this.heartbeatMs = Math.max(1, Math.min(config.getLeaderHeartbeatMs(), leaseMs / 2));
+        this.thread = new Thread(this, "leader-lease");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * ハートビートを開始（初期化の再試行で複数回呼び出された場合は何もしない）
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        logger.info("リーダーリースを開始します - リース: {}, インスタンス: {}, 有効期間: {}ms, ハートビート: {}ms",
+                leaseName, ownerId, leaseMs, heartbeatMs);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            heartbeat();
+            try {
+                Thread.sleep(heartbeatMs);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * リースを1回取得・更新し、リーダー状態を切り替える
+     */
+    private void heartbeat() {
+        long startNanos = System.nanoTime();
+        try {
+            LeaseState state = dbManager.acquireOrRenewLease(leaseName, ownerId, leaseMs);
+            if (state.isAcquired()) {
+                long newValidUntilNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(leaseMs);
+                if (!isLeader()) {
+                    onAcquired(state, newValidUntilNanos);
+                } else {
+                    epoch = state.getEpoch();
+                    validUntilNanos = newValidUntilNanos;
+                }
+            } else {
+                if (leader) {
+                    onLost("他のインスタンスがリースを保持しています: " + state.getOwnerId());
+                }
+                if (state.getOwnerId() != null && !state.getOwnerId().equals(lastObservedOwner)) {
+                    logger.info("スタンバイとして待機します（リーダー: {}）", state.getOwnerId());
+                }
+            }
+            lastObservedOwner = state.getOwnerId();
+        } catch (SQLException e) {
+            heartbeatFailures.increment();
+            logger.warn("リーダーリースの更新に失敗しました: {}", e.getMessage());
+            if (leader && System.nanoTime() - validUntilNanos >= 0) {
+                onLost("リースを更新できないまま有効期間が経過しました");
+            }
+        }
+    }
+
+    /**
+     * 新しい期間のEPOCH・有効期限を設定してからリーダーであることを公開する
+     * （メインループが前の期間のEPOCHでverify()しないようにする）
+     */
+    private synchronized void onAcquired(LeaseState state, long newValidUntilNanos) {
+        // 新しい期間の値を設定し終えるまで、ローカルの有効期限内でもリーダーとして扱わない
+        leader = false;
+        epoch = state.getEpoch();
+        validUntilNanos = newValidUntilNanos;
+        acquisitions.increment();
+        if (lastObservedOwner != null && !lastObservedOwner.equals(ownerId)) {
+            takeovers.increment();
+            logger.warn("リーダーを引き継ぎました（前リーダー: {}、EPOCH: {}）", lastObservedOwner, state.getEpoch());
+        } else {
+            logger.info("リーダーになりました（EPOCH: {}）", state.getEpoch());
+        }
+        // メインループが処理を再開する前に呼び出す
+        if (onLeadershipAcquired != null) {
+            onLeadershipAcquired.run();
+        }
+        leader = true;
+        notifyAll();
+    }
+
+    private void onLost(String reason) {
+        losses.increment();
+        leader = false;
+        logger.warn("リーダーではなくなりました: {}", reason);
+    }
+
+    /**
+     * 現在リーダーとして処理してよい場合はtrue
+     */
+    public boolean isLeader() {
+        return leader && System.nanoTime() - validUntilNanos < 0;
+    }
+
+    /**
+     * リーダーになるまで最大timeoutMs待機
+     *
+     * @return リーダーになった場合はtrue
+     */
+    public synchronized boolean awaitLeadership(long timeoutMs) throws InterruptedException {
+        if (!isLeader()) {
+            TimeUnit.MILLISECONDS.timedWait(this, timeoutMs);
+        }
+        return isLeader();
+    }
+
+    /**
+     * コミット直前に、DB上でもリースを保持していることを確認（リース行をロックする）
+     *
+     * @param conn トランザクション用のConnection
+     * @return 保持している場合はtrue（falseの場合はロールバックすること）
+     */
+    public boolean verify(Connection conn) throws SQLException {
+        if (!isLeader()) {
+            return false;
+        }
+        return dbManager.verifyLease(conn, leaseName, ownerId, epoch);
+    }
+
+    public String getOwnerId() {
+        return ownerId;
+    }
+
+    public long getHeartbeatMs() {
+        return heartbeatMs;
+    }
+
+    /**
+     * ログ出力用のサマリー文字列
+     */
+    public String summary() {
+        return String.format("リーダー: %s, 取得 %d回 (うち引き継ぎ %d回), 喪失 %d回, ハートビート失敗 %d回",
+                isLeader() ? "はい" : "いいえ", acquisitions.sum(), takeovers.sum(), losses.sum(),
+                heartbeatFailures.sum());
+    }
+
+    /**
+     * ハートビートを停止し、保持しているリースを解放（スタンバイがすぐに引き継げるようにする）
+     */
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (leader) {
+            leader = false;
+            try {
+                dbManager.releaseLease(leaseName, ownerId);
+                logger.info("リーダーリースを解放しました");
+            } catch (SQLException e) {
+                logger.warn("リーダーリースの解放に失敗しました（有効期間の経過後に引き継がれます）: {}", e.getMessage());
+            }
+        }
+        logger.info("リーダーリース統計: {}", summary());
+    }
+}
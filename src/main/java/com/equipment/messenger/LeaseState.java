@@ -0,0 +1,46 @@
+package com.equipment.messenger;
+
+/**
+ * リーダーリース（EQP_LEADER_LEASE）の取得・更新後の状態
+ */
+public class LeaseState {
+    private final String ownerId;
+    private final long epoch;
+    private final boolean acquired;
+
+    public LeaseState(String ownerId, long epoch, boolean acquired) {
+        this.ownerId = ownerId;
+        this.epoch = epoch;
+        this.acquired = acquired;
+    }
+
+    /**
+     * 現在の所有者（不明な場合はnull）
+     */
+    public String getOwnerId() {
+        return ownerId;
+    }
+
+    /**
+     * 所有者が変わるたびに増える世代番号
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * 今回の呼び出しで自インスタンスがリースを取得または更新できた場合はtrue
+     */
+    public boolean isAcquired() {
+        return acquired;
+    }
+
+    @Override
+    public String toString() {
+        return "LeaseState{" +
+                "ownerId='" + ownerId + '\'' +
+                ", epoch=" + epoch +
+                ", acquired=" + acquired +
+                '}';
+    }
+}
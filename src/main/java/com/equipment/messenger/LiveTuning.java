@@ -0,0 +1,327 @@
+package com.equipment.messenger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 性能関連の設定値（TuningParameters）を実行中に差し替える
+ * - 設定ファイルの変更を監視し、変更されたら読み込み直す（config-watcherスレッド）
+ * - JMX（LiveTuningMBean）からの変更を受け付ける
+ *
+ * 新しいスナップショットは作成と値の検証が済んでから差し替えるため、読み取り側はロックなしで常に
+ * 一貫した値の組を取得できる。接続（コネクションプール・Artemis接続）は維持したまま、次のサイクルから反映される
+ * 再起動が必要な設定が変更された場合は警告を出力し、その値は反映しない
+ */
+public class LiveTuning implements LiveTuningMBean, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(LiveTuning.class);
+
+    // エディタの保存は複数のイベントになるため、最後のイベントから少し待ってからまとめて読み込む
+    private static final long RELOAD_DELAY_MS = 500;
+
+    private final String pipeline;
+    private final AtomicReference<TuningParameters> current;
+    // 最後に読み込んだ設定ファイルの内容（JMXでの変更の基準）
+    private Config fileConfig;
+    private final Properties overrides = new Properties();
+
+    private WatchService watchService;
+    private Thread watcher;
+    private ObjectName objectName;
+
+    /**
+     * @param config 起動時の設定（パイプライン用の設定の場合は、読み込み直しも同じパイプラインの設定で行う）
+     */
+    public LiveTuning(Config config) {
+        this.pipeline = config.getPipelineName().isEmpty() ? "default" : config.getPipelineName();
+        this.fileConfig = config;
+        this.current = new AtomicReference<>(TuningParameters.from(config));
+    }
+
+    /**
+     * 現在の設定値（サイクル・送信の開始時に1回取得し、その処理の間は同じ値を使用する）
+     */
+    public TuningParameters current() {
+        return current.get();
+    }
+
+    /**
+     * 設定ファイルの監視を開始（既に開始している場合や、クラスパス内の設定ファイルを使用している場合は何もしない）
+     */
+    public synchronized void startWatching() {
+        if (watcher != null) {
+            return;
+        }
+        File sourceFile = fileConfig.getSourceFile();
+        if (sourceFile == null) {
+            logger.info("クラスパス内の設定ファイルを使用しているため、設定ファイルの変更は監視しません");
+            return;
+        }
+
+        Path file = sourceFile.toPath();
+        try {
+            watchService = file.getFileSystem().newWatchService();
+            // ファイルを置き換えて保存するエディタにも対応するため、ディレクトリを監視する
+            file.getParent().register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            logger.warn("設定ファイルの監視を開始できませんでした: {}", e.getMessage());
+            return;
+        }
+
+        WatchService service = watchService;
+        watcher = new Thread(() -> watchLoop(service, file), "config-watcher-" + pipeline);
+        watcher.setDaemon(true);
+        watcher.start();
+        logger.info("設定ファイルの変更を監視します: {}", file);
+    }
+
+    private void watchLoop(WatchService service, Path file) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                boolean changed = containsFile(key, file);
+                // 続けて発生したイベントをまとめる
+                WatchKey next;
+                while ((next = service.poll(RELOAD_DELAY_MS, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= containsFile(next, file);
+                }
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            logger.debug("設定ファイルの監視を終了します");
+        }
+    }
+
+    private static boolean containsFile(WatchKey key, Path file) {
+        boolean found = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (file.getFileName().equals(event.context())) {
+                found = true;
+            }
+        }
+        key.reset();
+        return found;
+    }
+
+    /**
+     * 設定ファイルを読み込み直して反映（JMXで変更した値は破棄する）
+     */
+    @Override
+    public synchronized boolean reload() {
+        Config reloaded;
+        TuningParameters parameters;
+        try {
+            reloaded = fileConfig.reload();
+            parameters = TuningParameters.from(reloaded);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("設定ファイルを読み込み直せませんでした。現在の設定で処理を継続します: {}", e.getMessage());
+            return false;
+        }
+
+        Set<String> changed = fileConfig.changedKeys(reloaded);
+        Set<String> restartRequired = new TreeSet<>(changed);
+        restartRequired.removeAll(TuningParameters.KEYS);
+        changed.retainAll(TuningParameters.KEYS);
+        if (!restartRequired.isEmpty()) {
+            logger.warn("再起動するまで反映されない設定が変更されています: {}", restartRequired);
+        }
+
+        boolean hadOverrides = !overrides.isEmpty();
+        fileConfig = reloaded;
+        overrides.clear();
+        if (!changed.isEmpty() || hadOverrides) {
+            current.set(parameters);
+            logger.info("設定ファイルの変更を反映しました [{}] - 変更: {} - {}", pipeline, changed, parameters);
+        }
+        return true;
+    }
+
+    /**
+     * JMXから変更した値を反映
+     */
+    private synchronized void override(String key, String value) {
+        Properties candidate = new Properties();
+        candidate.putAll(overrides);
+        candidate.setProperty(key, value);
+        try {
+            TuningParameters parameters = TuningParameters.from(fileConfig.withOverrides(candidate));
+            overrides.setProperty(key, value);
+            current.set(parameters);
+            logger.info("JMXから設定を変更しました [{}] - {} = {} - {}", pipeline, key, value, parameters);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("設定値を反映できません: " + key + " = " + value, e);
+        }
+    }
+
+    /**
+     * JMXに登録（登録に失敗しても処理は継続する）
+     */
+    public void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("com.equipment.messenger:type=Tuning,pipeline="
+                    + ObjectName.quote(pipeline));
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+                objectName = name;
+            }
+        } catch (Exception e) {
+            logger.warn("設定値のJMX登録に失敗しました: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 監視スレッドを停止し、JMXの登録を解除
+     */
+    @Override
+    public synchronized void close() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                logger.debug("設定ファイルの監視の終了時のエラー（無視）: {}", e.getMessage());
+            }
+            watchService = null;
+        }
+        watcher = null;
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (Exception e) {
+                logger.debug("設定値のJMX登録解除に失敗しました: {}", e.getMessage());
+            }
+            objectName = null;
+        }
+    }
+
+    // ========== JMX ==========
+
+    @Override
+    public int getIntervalSeconds() {
+        return current().getIntervalSeconds();
+    }
+
+    @Override
+    public void setIntervalSeconds(int seconds) {
+        override("app.interval.seconds", String.valueOf(seconds));
+    }
+
+    @Override
+    public int getLockRetrySeconds() {
+        return current().getLockRetrySeconds();
+    }
+
+    @Override
+    public void setLockRetrySeconds(int seconds) {
+        override("app.lock.retry.seconds", String.valueOf(seconds));
+    }
+
+    @Override
+    public int getCatchUpChunkSize() {
+        return current().getCatchUpChunkSize();
+    }
+
+    @Override
+    public void setCatchUpChunkSize(int rows) {
+        override("app.catchup.chunk.size", String.valueOf(rows));
+    }
+
+    @Override
+    public long getAdaptiveIntervalMinMs() {
+        return current().getAdaptiveIntervalMinMs();
+    }
+
+    @Override
+    public void setAdaptiveIntervalMinMs(long millis) {
+        override("app.interval.adaptive.min.ms", String.valueOf(millis));
+    }
+
+    @Override
+    public int getAdaptiveIntervalBacklogRows() {
+        return current().getAdaptiveIntervalBacklogRows();
+    }
+
+    @Override
+    public void setAdaptiveIntervalBacklogRows(int rows) {
+        override("app.interval.adaptive.backlog.rows", String.valueOf(rows));
+    }
+
+    @Override
+    public int getFetchSize() {
+        return current().getFetchSize();
+    }
+
+    @Override
+    public void setFetchSize(int rows) {
+        override("db.fetch.size", String.valueOf(rows));
+    }
+
+    @Override
+    public int getBatchSize() {
+        return current().getBatchSize();
+    }
+
+    @Override
+    public void setBatchSize(int messages) {
+        override("artemis.batch.size", String.valueOf(messages));
+    }
+
+    @Override
+    public int getSendMaxRetries() {
+        return current().getSendMaxRetries();
+    }
+
+    @Override
+    public void setSendMaxRetries(int retries) {
+        override("artemis.send.max.retries", String.valueOf(retries));
+    }
+
+    @Override
+    public long getRetryBackoffMs() {
+        return current().getRetryBackoffMs();
+    }
+
+    @Override
+    public void setRetryBackoffMs(long millis) {
+        override("artemis.retry.backoff.ms", String.valueOf(millis));
+    }
+
+    @Override
+    public int getAsyncWindow() {
+        return current().getAsyncWindow();
+    }
+
+    @Override
+    public void setAsyncWindow(int messages) {
+        override("artemis.async.window", String.valueOf(messages));
+    }
+
+    @Override
+    public long getAsyncConfirmTimeoutMs() {
+        return current().getAsyncConfirmTimeoutMs();
+    }
+
+    @Override
+    public void setAsyncConfirmTimeoutMs(long millis) {
+        override("artemis.async.confirm.timeout.ms", String.valueOf(millis));
+    }
+}
@@ -0,0 +1,59 @@
+package com.equipment.messenger;
+
+/**
+ * 性能関連の設定値のJMXインターフェース（MBean名: com.equipment.messenger:type=Tuning,pipeline=<パイプライン名>）
+ * 変更は次のサイクル（送信は次のバッチ）から反映される。設定ファイルを変更した場合は、JMXで変更した値は破棄される
+ */
+public interface LiveTuningMBean {
+
+    int getIntervalSeconds();
+
+    void setIntervalSeconds(int seconds);
+
+    int getLockRetrySeconds();
+
+    void setLockRetrySeconds(int seconds);
+
+    int getCatchUpChunkSize();
+
+    void setCatchUpChunkSize(int rows);
+
+    long getAdaptiveIntervalMinMs();
+
+    void setAdaptiveIntervalMinMs(long millis);
+
+    int getAdaptiveIntervalBacklogRows();
+
+    void setAdaptiveIntervalBacklogRows(int rows);
+
+    int getFetchSize();
+
+    void setFetchSize(int rows);
+
+    int getBatchSize();
+
+    void setBatchSize(int messages);
+
+    int getSendMaxRetries();
+
+    void setSendMaxRetries(int retries);
+
+    long getRetryBackoffMs();
+
+    void setRetryBackoffMs(long millis);
+
+    int getAsyncWindow();
+
+    void setAsyncWindow(int messages);
+
+    long getAsyncConfirmTimeoutMs();
+
+    void setAsyncConfirmTimeoutMs(long millis);
+
+    /**
+     * 設定ファイルを読み込み直す
+     *
+     * @return 新しい設定を反映した場合はtrue（読み込みや値の解釈に失敗した場合はfalse）
+     */
+    boolean reload();
+}
@@ -0,0 +1,291 @@
+package com.equipment.messenger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 装置ごとの最終送信状態 EQPID → (STATUS, TIMESTAMPTIME) をメモリマップドファイルに保存するストア
+ * 再起動後も前回の送信状態から即座に重複抑止を再開できるようにする
+ *
+ * ファイル構成: ヘッダー（64バイト）+ 固定長スロット（128バイト）× スロット数
+ * スロット構成: シーケンス(4) CRC32(4) TIMESTAMPTIME(8) EQPID長(1) EQPID(63) STATUS長(1) STATUS(47)
+ * （STATUS長が255の場合はSTATUSがnull）
+ *
+ * 更新時はシーケンスを奇数にしてから内容を書き込み、CRC32を書いてから偶数に戻す。
+ * 書き込み途中でプロセスが停止したスロットは、読み込み時にシーケンスまたはCRCの不一致で破棄する
+ * （その装置は再起動後の最初の送信が抑止されないだけで、送信漏れは発生しない）
+ */
+public class MappedLastStateStore implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(MappedLastStateStore.class);
+
+    private static final int MAGIC = 0x45514C53; // "EQLS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_SIZE = 128;
+
+    private static final int OFFSET_SEQ = 0;
+    private static final int OFFSET_CRC = 4;
+    private static final int OFFSET_TIMESTAMP = 8;
+    private static final int OFFSET_PAYLOAD = 16;
+    private static final int MAX_EQPID_BYTES = 63;
+    private static final int MAX_STATUS_BYTES = 47;
+    private static final int PAYLOAD_SIZE = SLOT_SIZE - OFFSET_PAYLOAD;
+    private static final int NULL_STATUS_LENGTH = 0xFF;
+
+    private final File file;
+    private final int slotCount;
+    private final boolean forceOnWrite;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    private final Map<String, Integer> slotIndex = new HashMap<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private final byte[] payload = new byte[PAYLOAD_SIZE];
+    private final CRC32 crc = new CRC32();
+    private boolean fullWarningLogged;
+
+    public MappedLastStateStore(File file, int slotCount, boolean forceOnWrite) throws IOException {
+        this.file = file;
+        this.slotCount = slotCount;
+        this.forceOnWrite = forceOnWrite;
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("ディレクトリを作成できません: " + parent);
+        }
+
+        long size = HEADER_SIZE + (long) slotCount * SLOT_SIZE;
+        this.randomAccessFile = new RandomAccessFile(file, "rw");
+        this.channel = randomAccessFile.getChannel();
+        boolean existing = channel.size() > 0;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+        if (existing && !headerMatches()) {
+            logger.warn("最終状態ストアの形式が一致しないため初期化します: {}", file.getAbsolutePath());
+            clear();
+        }
+        writeHeader();
+    }
+
+    /**
+     * 保存されている有効な状態をすべて読み込み、スロットの索引を作成
+     *
+     * @param cache 読み込んだ状態の反映先
+     * @return 読み込んだ件数
+     */
+    public synchronized int loadInto(LastStateCache cache) {
+        int loaded = 0;
+        int discarded = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            int base = slotOffset(slot);
+            int seq = buffer.getInt(base + OFFSET_SEQ);
+            if (seq == 0) {
+                freeSlots.add(slot);
+                continue;
+            }
+            if ((seq & 1) != 0 || !crcMatches(base)) {
+                // 書き込み途中で停止したスロット
+                clearSlot(base);
+                freeSlots.add(slot);
+                discarded++;
+                continue;
+            }
+
+            int eqpIdLength = buffer.get(base + OFFSET_PAYLOAD) & 0xFF;
+            String eqpId = readString(base + OFFSET_PAYLOAD + 1, eqpIdLength);
+            int statusLength = buffer.get(base + OFFSET_PAYLOAD + 1 + MAX_EQPID_BYTES) & 0xFF;
+            String status = statusLength == NULL_STATUS_LENGTH
+                    ? null
+                    : readString(base + OFFSET_PAYLOAD + 2 + MAX_EQPID_BYTES, statusLength);
+
+            if (slotIndex.containsKey(eqpId)) {
+                clearSlot(base);
+                freeSlots.add(slot);
+                continue;
+            }
+            slotIndex.put(eqpId, slot);
+            cache.restore(eqpId, status);
+            loaded++;
+        }
+
+        if (discarded > 0) {
+            logger.warn("最終状態ストアの不完全なスロットを{}件破棄しました", discarded);
+        }
+        logger.info("最終状態ストアから{}件を読み込みました: {}", loaded, file.getAbsolutePath());
+        return loaded;
+    }
+
+    /**
+     * 装置の最終送信状態を保存
+     */
+    public synchronized void put(String eqpId, String status, Date timestampTime) {
+        byte[] eqpIdBytes = eqpId.getBytes(StandardCharsets.UTF_8);
+        byte[] statusBytes = status != null ? status.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        if (eqpIdBytes.length > MAX_EQPID_BYTES || statusBytes.length > MAX_STATUS_BYTES) {
+            logger.debug("長さの上限を超えるため最終状態を保存しません - EQPID: {}", eqpId);
+            return;
+        }
+
+        Integer slot = slotIndex.get(eqpId);
+        if (slot == null) {
+            slot = freeSlots.poll();
+            if (slot == null) {
+                if (!fullWarningLogged) {
+                    logger.warn("最終状態ストアが満杯です（{}スロット）。新しい装置の状態は保存されません", slotCount);
+                    fullWarningLogged = true;
+                }
+                return;
+            }
+            slotIndex.put(eqpId, slot);
+        }
+
+        int base = slotOffset(slot);
+        int seq = buffer.getInt(base + OFFSET_SEQ);
+        int writingSeq = (seq & 1) == 0 ? seq + 1 : seq;
+
+        // 書き込み中を示す奇数シーケンス
+        buffer.putInt(base + OFFSET_SEQ, writingSeq);
+
+        Arrays.fill(payload, (byte) 0);
+        payload[0] = (byte) eqpIdBytes.length;
+        System.arraycopy(eqpIdBytes, 0, payload, 1, eqpIdBytes.length);
+        payload[1 + MAX_EQPID_BYTES] = (byte) (status != null ? statusBytes.length : NULL_STATUS_LENGTH);
+        System.arraycopy(statusBytes, 0, payload, 2 + MAX_EQPID_BYTES, statusBytes.length);
+
+        long timestamp = timestampTime != null ? timestampTime.getTime() : 0L;
+        buffer.putLong(base + OFFSET_TIMESTAMP, timestamp);
+        buffer.position(base + OFFSET_PAYLOAD);
+        buffer.put(payload);
+        buffer.putInt(base + OFFSET_CRC, checksum(timestamp, payload));
+
+        // 書き込み完了を示す偶数シーケンス（0は空きスロットを示すため使用しない）
+        int committedSeq = writingSeq + 1 == 0 ? 2 : writingSeq + 1;
+        buffer.putInt(base + OFFSET_SEQ, committedSeq);
+
+        if (forceOnWrite) {
+            buffer.force();
+        }
+    }
+
+    /**
+     * 装置の保存されている状態を削除
+     */
+    public synchronized void remove(String eqpId) {
+        Integer slot = slotIndex.remove(eqpId);
+        if (slot == null) {
+            return;
+        }
+        // シーケンスが0のスロットは空きとして扱われる
+        clearSlot(slotOffset(slot));
+        freeSlots.add(slot);
+        if (forceOnWrite) {
+            buffer.force();
+        }
+    }
+
+    /**
+     * 保存されているすべての状態を削除
+     */
+    public synchronized void clearAll() {
+        clear();
+        slotIndex.clear();
+        freeSlots.clear();
+        for (int slot = 0; slot < slotCount; slot++) {
+            freeSlots.add(slot);
+        }
+        fullWarningLogged = false;
+        if (forceOnWrite) {
+            buffer.force();
+        }
+    }
+
+    /**
+     * 保存されている装置数
+     */
+    public synchronized int size() {
+        return slotIndex.size();
+    }
+
+    private boolean headerMatches() {
+        return buffer.getInt(0) == MAGIC
+                && buffer.getInt(4) == VERSION
+                && buffer.getInt(8) == slotCount
+                && buffer.getInt(12) == SLOT_SIZE;
+    }
+
+    private void writeHeader() {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, slotCount);
+        buffer.putInt(12, SLOT_SIZE);
+    }
+
+    private void clear() {
+        for (int slot = 0; slot < slotCount; slot++) {
+            clearSlot(slotOffset(slot));
+        }
+    }
+
+    private void clearSlot(int base) {
+        for (int i = 0; i < SLOT_SIZE; i += 8) {
+            buffer.putLong(base + i, 0L);
+        }
+    }
+
+    private boolean crcMatches(int base) {
+        byte[] stored = new byte[PAYLOAD_SIZE];
+        ByteBuffer view = buffer.duplicate();
+        view.position(base + OFFSET_PAYLOAD);
+        view.get(stored);
+        return buffer.getInt(base + OFFSET_CRC) == checksum(buffer.getLong(base + OFFSET_TIMESTAMP), stored);
+    }
+
+    private int checksum(long timestamp, byte[] slotPayload) {
+        crc.reset();
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (timestamp >>> shift) & 0xFF);
+        }
+        crc.update(slotPayload, 0, slotPayload.length);
+        return (int) crc.getValue();
+    }
+
+    private String readString(int offset, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int slotOffset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            buffer.force();
+            channel.close();
+            randomAccessFile.close();
+            logger.info("最終状態ストアをクローズしました（{}件）", slotIndex.size());
+        } catch (IOException e) {
+            logger.error("最終状態ストアのクローズに失敗", e);
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.equipment.messenger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * パイプラインごとの処理メトリクス
+ * サイクル・ロック取得・クエリ・送信・コミットの所要時間、件数、エラー回数、処理済みタイムスタンプの遅れを集計し、
+ * JMX（MessengerMetricsMBean）とPrometheus形式（MetricsHttpServer）で公開する
+ */
+public class MessengerMetrics implements MessengerMetricsMBean {
+    private static final Logger logger = LoggerFactory.getLogger(MessengerMetrics.class);
+
+    private final String pipeline;
+
+    private final LatencyHistogram cycleLatency = new LatencyHistogram();
+    private final LatencyHistogram lockAcquireLatency = new LatencyHistogram();
+    private final LatencyHistogram queryLatency = new LatencyHistogram();
+    private final LatencyHistogram sendLatency = new LatencyHistogram();
+    private final LatencyHistogram commitLatency = new LatencyHistogram();
+
+    private final LongAdder rowsFetched = new LongAdder();
+    private final LongAdder messagesSent = new LongAdder();
+    private final LongAdder lockConflicts = new LongAdder();
+    private final LongAdder cycleFailures = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+    private final LongAdder sendRetries = new LongAdder();
+    private final LongAdder suppressedEmailAlerts = new LongAdder();
+
+    // 処理済みタイムスタンプ（エポックミリ秒、未処理の場合は-1）
+    private final AtomicLong watermarkMillis = new AtomicLong(-1);
+
+    private final LatencyRecorder latency;
+
+    private ObjectName objectName;
+
+    /**
+     * @param pipeline パイプライン名（複数パイプラインを使用しない場合は "default"）
+     */
+    public MessengerMetrics(String pipeline) {
+        this.pipeline = pipeline;
+        this.latency = new LatencyRecorder(pipeline);
+    }
+
+    /**
+     * JMXに登録（登録に失敗しても処理は継続する）
+     */
+    public void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("com.equipment.messenger:type=Messenger,pipeline="
+                    + ObjectName.quote(pipeline));
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+                objectName = name;
+            }
+        } catch (Exception e) {
+            logger.warn("メトリクスのJMX登録に失敗しました: {}", e.getMessage());
+        }
+    }
+
+    public void unregisterMBean() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (Exception e) {
+            logger.debug("メトリクスのJMX登録解除に失敗しました: {}", e.getMessage());
+        }
+        objectName = null;
+    }
+
+    // ========== 記録 ==========
+
+    public void recordCycle(long elapsedNanos) {
+        cycleLatency.record(elapsedNanos);
+        latency.recordCycle(elapsedNanos);
+    }
+
+    public void recordLockAcquire(long elapsedNanos) {
+        lockAcquireLatency.record(elapsedNanos);
+    }
+
+    public void recordQuery(long elapsedNanos, int rows) {
+        queryLatency.record(elapsedNanos);
+        rowsFetched.add(rows);
+    }
+
+    /**
+     * 取得件数のみを記録（ストリーミング処理では取得と送信が並行するため、取得時間は記録しない）
+     */
+    public void recordRowsFetched(int rows) {
+        rowsFetched.add(rows);
+    }
+
+    public void recordSend(long elapsedNanos, int messages) {
+        sendLatency.record(elapsedNanos);
+        messagesSent.add(messages);
+    }
+
+    /**
+     * 送信が確定したバッチを記録（送信時間に加え、メッセージごとのレイテンシを記録）
+     */
+    public void recordDelivered(long elapsedNanos, List<EquipmentStatus> statusList) {
+        recordSend(elapsedNanos, statusList.size());
+        latency.recordDelivered(statusList, System.currentTimeMillis());
+    }
+
+    public void recordCommit(long elapsedNanos) {
+        commitLatency.record(elapsedNanos);
+    }
+
+    public void recordLockConflict() {
+        lockConflicts.increment();
+    }
+
+    public void recordCycleFailure() {
+        cycleFailures.increment();
+    }
+
+    public void recordReconnect() {
+        reconnects.increment();
+    }
+
+    public void recordSendRetry() {
+        sendRetries.increment();
+    }
+
+    public void recordSuppressedEmailAlert() {
+        suppressedEmailAlerts.increment();
+    }
+
+    /**
+     * コミットした処理済みタイムスタンプを記録
+     */
+    public void updateWatermark(Date timestamp) {
+        if (timestamp != null) {
+            watermarkMillis.set(timestamp.getTime());
+        }
+    }
+
+    // ========== JMX ==========
+
+    @Override
+    public long getCycleCount() {
+        return cycleLatency.getCount();
+    }
+
+    @Override
+    public double getCycleAverageMillis() {
+        return cycleLatency.getAverageMillis();
+    }
+
+    @Override
+    public double getCycleMaxMillis() {
+        return cycleLatency.getMaxMillis();
+    }
+
+    @Override
+    public double getLockAcquireAverageMillis() {
+        return lockAcquireLatency.getAverageMillis();
+    }
+
+    @Override
+    public double getQueryAverageMillis() {
+        return queryLatency.getAverageMillis();
+    }
+
+    @Override
+    public long getRowsFetched() {
+        return rowsFetched.sum();
+    }
+
+    @Override
+    public long getMessagesSent() {
+        return messagesSent.sum();
+    }
+
+    @Override
+    public double getSendAverageMillis() {
+        return sendLatency.getAverageMillis();
+    }
+
+    @Override
+    public double getSendMaxMillis() {
+        return sendLatency.getMaxMillis();
+    }
+
+    @Override
+    public double getCommitAverageMillis() {
+        return commitLatency.getAverageMillis();
+    }
+
+    @Override
+    public long getLockConflicts() {
+        return lockConflicts.sum();
+    }
+
+    @Override
+    public long getCycleFailures() {
+        return cycleFailures.sum();
+    }
+
+    @Override
+    public long getReconnects() {
+        return reconnects.sum();
+    }
+
+    @Override
+    public long getSendRetries() {
+        return sendRetries.sum();
+    }
+
+    @Override
+    public long getSuppressedEmailAlerts() {
+        return suppressedEmailAlerts.sum();
+    }
+
+    @Override
+    public long getWatermarkLagMillis() {
+        long watermark = watermarkMillis.get();
+        return watermark < 0 ? -1 : System.currentTimeMillis() - watermark;
+    }
+
+    @Override
+    public double getEndToEndP50Millis() {
+        return latency.getLastEndToEndP50Millis();
+    }
+
+    @Override
+    public double getEndToEndP99Millis() {
+        return latency.getLastEndToEndP99Millis();
+    }
+
+    @Override
+    public double getEndToEndP999Millis() {
+        return latency.getLastEndToEndP999Millis();
+    }
+
+    /**
+     * レイテンシのHDRヒストグラム（区間ごとのパーセンタイル出力に使用）
+     */
+    public LatencyRecorder getLatencyRecorder() {
+        return latency;
+    }
+
+    public String getPipeline() {
+        return pipeline;
+    }
+
+    // ========== Prometheus ==========
+
+    /**
+     * 全パイプラインのメトリクスをPrometheusのテキスト形式で出力
+     * 同じメトリクス名のHELP/TYPE行は1回だけ出力し、パイプラインはpipelineラベルで区別する
+     */
+    public static void writePrometheus(StringBuilder out, List<MessengerMetrics> all) {
+        writeHistogram(out, all, "eqp_cycle_duration_seconds", "1サイクルの所要時間", m -> m.cycleLatency);
+        writeHistogram(out, all, "eqp_lock_acquire_seconds", "タイムスタンプ取得（行ロック）の所要時間",
+                m -> m.lockAcquireLatency);
+        writeHistogram(out, all, "eqp_query_seconds", "装置ステータス取得クエリの所要時間", m -> m.queryLatency);
+        writeHistogram(out, all, "eqp_send_seconds", "ブローカーへのバッチ送信の所要時間", m -> m.sendLatency);
+        writeHistogram(out, all, "eqp_commit_seconds", "タイムスタンプ更新・コミットの所要時間", m -> m.commitLatency);
+        writeCounter(out, all, "eqp_rows_fetched_total", "取得した装置ステータスの件数", m -> m.rowsFetched.sum());
+        writeCounter(out, all, "eqp_messages_sent_total", "ブローカーに送信したメッセージ数", m -> m.messagesSent.sum());
+        writeCounter(out, all, "eqp_lock_conflicts_total", "ORA-00054によるロック競合の回数", m -> m.lockConflicts.sum());
+        writeCounter(out, all, "eqp_cycle_failures_total", "エラーで終了したサイクル数", m -> m.cycleFailures.sum());
+        writeCounter(out, all, "eqp_artemis_reconnects_total", "Artemisへの再接続の回数", m -> m.reconnects.sum());
+        writeCounter(out, all, "eqp_send_retries_total", "送信の再試行の回数", m -> m.sendRetries.sum());
+        writeCounter(out, all, "eqp_email_alerts_suppressed_total", "抑止したメール通知の回数",
+                m -> m.suppressedEmailAlerts.sum());
+
+        writeHeader(out, "eqp_watermark_lag_seconds", "現在時刻と処理済みタイムスタンプの差", "gauge");
+        for (MessengerMetrics metrics : all) {
+            long lagMillis = metrics.getWatermarkLagMillis();
+            out.append("eqp_watermark_lag_seconds{").append(metrics.labels()).append("} ")
+                    .append(lagMillis < 0 ? "NaN" : String.valueOf(lagMillis / 1000.0)).append('\n');
+        }
+    }
+
+    private static void writeHistogram(StringBuilder out, List<MessengerMetrics> all, String name, String help,
+                                       Function<MessengerMetrics, LatencyHistogram> histogram) {
+        writeHeader(out, name, help, "histogram");
+        for (MessengerMetrics metrics : all) {
+            histogram.apply(metrics).writePrometheus(out, name, metrics.labels());
+        }
+    }
+
+    private static void writeCounter(StringBuilder out, List<MessengerMetrics> all, String name, String help,
+                                     ToLongFunction<MessengerMetrics> value) {
+        writeHeader(out, name, help, "counter");
+        for (MessengerMetrics metrics : all) {
+            out.append(name).append('{').append(metrics.labels()).append("} ")
+                    .append(value.applyAsLong(metrics)).append('\n');
+        }
+    }
+
+    static void writeHeader(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private String labels() {
+        return "pipeline=\"" + pipeline.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
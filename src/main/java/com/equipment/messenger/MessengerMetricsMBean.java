@@ -0,0 +1,52 @@
+package com.equipment.messenger;
+
+/**
+ * 処理メトリクスのJMXインターフェース（MBean名: com.equipment.messenger:type=Messenger,pipeline=<パイプライン名>）
+ * 時間はミリ秒
+ */
+public interface MessengerMetricsMBean {
+
+    long getCycleCount();
+
+    double getCycleAverageMillis();
+
+    double getCycleMaxMillis();
+
+    double getLockAcquireAverageMillis();
+
+    double getQueryAverageMillis();
+
+    long getRowsFetched();
+
+    long getMessagesSent();
+
+    double getSendAverageMillis();
+
+    double getSendMaxMillis();
+
+    double getCommitAverageMillis();
+
+    long getLockConflicts();
+
+    long getCycleFailures();
+
+    long getReconnects();
+
+    long getSendRetries();
+
+    long getSuppressedEmailAlerts();
+
+    /**
+     * 現在時刻と処理済みタイムスタンプの差（ミリ秒、未処理の場合は-1）
+     */
+    long getWatermarkLagMillis();
+
+    /**
+     * 直近の出力区間における発生（TIMESTAMPTIME）→送信確定のレイテンシ（ミリ秒）
+     */
+    double getEndToEndP50Millis();
+
+    double getEndToEndP99Millis();
+
+    double getEndToEndP999Millis();
+}
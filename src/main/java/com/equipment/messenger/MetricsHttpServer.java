@@ -0,0 +1,107 @@
+package com.equipment.messenger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Prometheus形式のメトリクスを /metrics で公開するHTTPサーバー
+ * 全パイプラインの処理メトリクスと、共有しているコネクションプールのメトリクスを出力する
+ */
+public class MetricsHttpServer implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(MetricsHttpServer.class);
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final List<MessengerMetrics> metrics;
+    private final PoolMetrics poolMetrics;
+
+    /**
+     * @param port 待ち受けポート
+     * @param metrics 出力するパイプラインのメトリクス
+     * @param poolMetrics 出力するコネクションプールのメトリクス
+     */
+    public MetricsHttpServer(int port, List<MessengerMetrics> metrics, PoolMetrics poolMetrics) throws IOException {
+        this.metrics = metrics;
+        this.poolMetrics = poolMetrics;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/metrics", this::handle);
+    }
+
+    public void start() {
+        server.start();
+        logger.info("メトリクスを公開します: http://0.0.0.0:{}/metrics", server.getAddress().getPort());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Prometheusのテキスト形式でメトリクスを出力
+     */
+    String render() {
+        StringBuilder out = new StringBuilder(16 * 1024);
+        MessengerMetrics.writePrometheus(out, metrics);
+        if (poolMetrics != null) {
+            writePool(out);
+        }
+        return out.toString();
+    }
+
+    private void writePool(StringBuilder out) {
+        writeValue(out, "eqp_db_connections_created_total", "コネクションプールの接続確立回数", "counter",
+                poolMetrics.getConnectionsCreated());
+        writeValue(out, "eqp_db_connection_create_seconds_total", "接続確立の所要時間の合計", "counter",
+                poolMetrics.getConnectionCreateMillisTotal() / 1000.0);
+        writeValue(out, "eqp_db_connections_acquired_total", "コネクションプールからの接続取得回数", "counter",
+                poolMetrics.getConnectionsAcquired());
+        writeValue(out, "eqp_db_connection_acquire_seconds_total", "接続取得の所要時間の合計", "counter",
+                poolMetrics.getConnectionAcquireNanosTotal() / 1e9);
+        writeValue(out, "eqp_db_connection_timeouts_total", "接続取得のタイムアウト回数", "counter",
+                poolMetrics.getConnectionTimeouts());
+        writeValue(out, "eqp_db_connections_active", "使用中の接続数", "gauge", poolMetrics.getActiveConnections());
+        writeValue(out, "eqp_db_connections_idle", "アイドル状態の接続数", "gauge", poolMetrics.getIdleConnections());
+    }
+
+    private static void writeValue(StringBuilder out, String name, String help, String type, double value) {
+        MessengerMetrics.writeHeader(out, name, help, type);
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,96 @@
+package com.equipment.messenger;
+
+import oracle.jdbc.OracleConnection;
+import oracle.jdbc.dcn.DatabaseChangeEvent;
+import oracle.jdbc.dcn.DatabaseChangeRegistration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.Properties;
+
+/**
+ * Oracle Database Change Notification (DCN) による変更検知
+ * 装置ステータステーブルの変更がコミットされると、Oracleからの通知で即座にメインループを起こす
+ *
+ * 登録にはCHANGE NOTIFICATION権限が必要。登録に失敗した場合や、DB再起動で登録が解除された場合は
+ * 安全策のポーリング（タイムアウト）ごとに再登録を試みる
+ */
+public class OracleChangeNotificationSource extends SignalChangeSource {
+    private static final Logger logger = LoggerFactory.getLogger(OracleChangeNotificationSource.class);
+
+    private final DatabaseManager dbManager;
+    private final boolean clientInitiated;
+    private volatile DatabaseChangeRegistration registration;
+
+    public OracleChangeNotificationSource(DatabaseManager dbManager, Config config) {
+        super(config.getChangeSourceMinIntervalMs());
+        this.dbManager = dbManager;
+        this.clientInitiated = config.isChangeSourceDcnClientInitiated();
+    }
+
+    @Override
+    public void start() {
+        register();
+    }
+
+    @Override
+    public boolean awaitChange(long timeoutMs) throws InterruptedException {
+        boolean changed = super.awaitChange(timeoutMs);
+        if (registration == null) {
+            register();
+        }
+        return changed;
+    }
+
+    /**
+     * 変更通知を登録（失敗時は安全策のポーリングのみで動作を継続）
+     */
+    private synchronized void register() {
+        if (registration != null) {
+            return;
+        }
+
+        Properties options = new Properties();
+        options.setProperty(OracleConnection.DCN_NOTIFY_ROWIDS, "false");
+        // 接続元から通知用の接続を確立する（ファイアウォールでDBからの接続が許可されていない環境向け）
+        options.setProperty(OracleConnection.DCN_CLIENT_INIT_CONNECTION, String.valueOf(clientInitiated));
+
+        try {
+            DatabaseChangeRegistration newRegistration = dbManager.registerEquipmentChangeNotification(options);
+            newRegistration.addListener(this::onDatabaseChange);
+            registration = newRegistration;
+            logger.info("変更通知（DCN）を登録しました - 登録ID: {}", newRegistration.getRegId());
+        } catch (SQLException e) {
+            logger.error("変更通知（DCN）の登録に失敗しました。安全策のポーリングで動作を継続します: {}", e.getMessage());
+        }
+    }
+
+    private void onDatabaseChange(DatabaseChangeEvent event) {
+        DatabaseChangeEvent.EventType type = event.getEventType();
+        if (type == DatabaseChangeEvent.EventType.DEREG
+                || type == DatabaseChangeEvent.EventType.SHUTDOWN
+                || type == DatabaseChangeEvent.EventType.SHUTDOWN_ANY) {
+            // 登録が解除されたため、次回の待機後に再登録する
+            logger.warn("変更通知（DCN）の登録が解除されました - イベント: {}", type);
+            registration = null;
+        } else {
+            logger.debug("変更通知（DCN）を受信しました - イベント: {}", type);
+        }
+        signal();
+    }
+
+    @Override
+    public synchronized void close() {
+        DatabaseChangeRegistration current = registration;
+        registration = null;
+        if (current != null) {
+            try {
+                dbManager.unregisterChangeNotification(current);
+                logger.info("変更通知（DCN）の登録を解除しました");
+            } catch (SQLException e) {
+                logger.warn("変更通知（DCN）の登録解除に失敗しました: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.equipment.messenger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 送信ジャーナルの未送信レコードをArtemisへ転送するスレッド
+ * 送信が確定したレコードのみ送信済みとして記録するため、転送中に停止しても再起動後に続きから再送する
+ */
+public class OutboxForwarder implements Runnable, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(OutboxForwarder.class);
+
+    private static final long IDLE_WAIT_MS = 1000;
+
+    private final OutboxJournal journal;
+    private final StatusSender statusSender;
+    private final EmailService emailService;
+    private final int batchSize;
+    private final long retryIntervalMs;
+    private final Thread thread;
+    private volatile boolean running = true;
+    private boolean started;
+
+    public OutboxForwarder(OutboxJournal journal, StatusSender statusSender, EmailService emailService, Config config) {
+        this.journal = journal;
+        this.statusSender = statusSender;
+        this.emailService = emailService;
+        this.batchSize = Math.max(1, config.getOutboxForwardBatchSize());
+        this.retryIntervalMs = config.getOutboxRetryMs();
+        this.thread = new Thread(this, "outbox-forwarder");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * 転送を開始（初期化の再試行で複数回呼び出された場合は何もしない）
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        logger.info("送信ジャーナルの転送を開始します");
+        while (running) {
+            OutboxJournal.Batch batch;
+            try {
+                batch = journal.read(batchSize, IDLE_WAIT_MS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (batch.isEmpty()) {
+                continue;
+            }
+
+            try {
+                statusSender.sendBatch(batch.getStatusList());
+                journal.ack(batch.getEndPosition());
+                logger.debug("送信ジャーナルから{}件を転送しました（未送信 {}バイト）",
+                        batch.getStatusList().size(), journal.getPendingBytes());
+            } catch (Exception e) {
+                logger.error("送信ジャーナルの転送に失敗しました。{}ms後に再試行します", retryIntervalMs, e);
+                emailService.sendArtemisConnectionFailureNotification(e);
+                try {
+                    Thread.sleep(retryIntervalMs);
+                } catch (InterruptedException ie) {
+                    break;
+                }
+            }
+        }
+        logger.info("送信ジャーナルの転送を停止しました");
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.equipment.messenger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * 送信待ち装置ステータスのローカル追記型ジャーナル（メモリマップドファイル）
+ * メインループはジャーナルへの追記でDBのタイムスタンプをコミットし、OutboxForwarderが別スレッドで
+ * ジャーナルからArtemisへ送信して送信済み位置を記録する
+ *
+ * 位置は単調増加の論理位置で管理し、ファイル上の位置は (論理位置 - base) で求める。
+ * ヘッダーはA/Bの2スロットに交互に書き込み（シーケンス番号とCRC32付き）、
+ * 起動時は有効なスロットのうちシーケンスが大きい方を採用するため、ヘッダー更新中に停止しても整合性を保つ
+ *
+ * レコード形式: 長さ(4) CRC32(4) TIMESTAMPTIME(8) EQPID長(2) EQPID STATUS長(2, nullは-1) STATUS
+ */
+public class OutboxJournal implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(OutboxJournal.class);
+
+    private static final int HEADER_SLOT_SIZE = 64;
+    private static final int DATA_START = HEADER_SLOT_SIZE * 2;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final long MAGIC = 0x45514F5554424F58L; // "EQOUTBOX"
+    // 1つのMappedByteBufferでマップできる上限（位置をintで扱うため）
+    private static final long MAX_SIZE_BYTES = Integer.MAX_VALUE;
+
+    private final File file;
+    private final boolean forceOnAppend;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final CRC32 crc = new CRC32();
+
+    private long headerSeq;
+    private long base;
+    private long writePosition;
+    private long ackPosition;
+
+    /**
+     * @param sizeBytes ジャーナルのサイズ（バイト、最大 Integer.MAX_VALUE）
+     * @throws IllegalArgumentException サイズが小さすぎる、またはメモリマップの上限を超える場合
+     */
+    public OutboxJournal(File file, long sizeBytes, boolean forceOnAppend) throws IOException {
+        if (sizeBytes <= DATA_START || sizeBytes > MAX_SIZE_BYTES) {
+            throw new IllegalArgumentException("送信ジャーナルのサイズが不正です（" + DATA_START + "バイトより大きく"
+                    + MAX_SIZE_BYTES / (1024 * 1024) + "MB以下）: " + sizeBytes + "バイト");
+        }
+        this.file = file;
+        this.forceOnAppend = forceOnAppend;
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("ディレクトリを作成できません: " + parent);
+        }
+
+        this.randomAccessFile = new RandomAccessFile(file, "rw");
+        this.channel = randomAccessFile.getChannel();
+        // 既存のジャーナルの方が大きい場合は、未送信データを失わないよう既存のサイズを使用
+        long size = Math.max(sizeBytes, channel.size());
+        if (size > MAX_SIZE_BYTES) {
+            randomAccessFile.close();
+            throw new IOException("既存の送信ジャーナルがメモリマップの上限を超えています: "
+                    + file.getAbsolutePath() + " (" + size + "バイト)");
+        }
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        this.capacity = (int) size;
+
+        if (!loadHeader()) {
+            base = 0;
+            writePosition = DATA_START;
+            ackPosition = DATA_START;
+            writeHeader();
+        }
+        logger.info("送信ジャーナルを開きました: {} (未送信 {}バイト)", file.getAbsolutePath(), writePosition - ackPosition);
+    }
+
+    /**
+     * 装置ステータスを追記
+     * 戻った時点でジャーナルに記録済み（forceOnAppendの場合はディスクに同期済み）
+     *
+     * @throws IOException 空き容量が不足している場合
+     */
+    public synchronized void append(List<EquipmentStatus> statusList) throws IOException {
+        if (statusList.isEmpty()) {
+            return;
+        }
+
+        List<byte[]> payloads = new ArrayList<>(statusList.size());
+        long required = 0;
+        for (EquipmentStatus status : statusList) {
+            byte[] payload = encode(status);
+            payloads.add(payload);
+            required += RECORD_HEADER_SIZE + payload.length;
+        }
+        ensureCapacity(required);
+
+        int offset = physical(writePosition);
+        for (byte[] payload : payloads) {
+            buffer.putInt(offset, payload.length);
+            buffer.putInt(offset + 4, checksum(payload));
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset + RECORD_HEADER_SIZE);
+            view.put(payload);
+            offset += RECORD_HEADER_SIZE + payload.length;
+        }
+
+        // データを同期してから書き込み位置を進める
+        if (forceOnAppend) {
+            buffer.force();
+        }
+        writePosition += required;
+        writeHeader();
+        notifyAll();
+    }
+
+    /**
+     * 未送信のレコードを最大maxRecords件読み出す（送信済み位置は進めない）
+     * レコードがない場合はtimeoutMsまで追記を待つ
+     */
+    public synchronized Batch read(int maxRecords, long timeoutMs) throws InterruptedException {
+        if (ackPosition == writePosition && timeoutMs > 0) {
+            TimeUnit.MILLISECONDS.timedWait(this, timeoutMs);
+        }
+
+        List<EquipmentStatus> statusList = new ArrayList<>();
+        long position = ackPosition;
+        while (position < writePosition && statusList.size() < maxRecords) {
+            int offset = physical(position);
+            int length = buffer.getInt(offset);
+            byte[] payload = null;
+            if (length > 0 && offset + RECORD_HEADER_SIZE + length <= physical(writePosition)) {
+                payload = new byte[length];
+                ByteBuffer view = buffer.duplicate();
+                view.position(offset + RECORD_HEADER_SIZE);
+                view.get(payload);
+            }
+            if (payload == null || buffer.getInt(offset + 4) != checksum(payload)) {
+                // 書き込み位置より前のレコードは同期済みのため、通常は発生しない
+                logger.error("送信ジャーナルのレコードが破損しています（位置 {}）。以降のレコードを破棄します", position);
+                writePosition = position;
+                writeHeader();
+                break;
+            }
+            statusList.add(decode(payload));
+            position += RECORD_HEADER_SIZE + length;
+        }
+        return new Batch(statusList, position);
+    }
+
+    /**
+     * 指定位置までを送信済みとして記録
+     * 全件送信済みになった場合はジャーナルの先頭から再利用する
+     */
+    public synchronized void ack(long position) {
+        if (position <= ackPosition) {
+            return;
+        }
+        ackPosition = Math.min(position, writePosition);
+        if (ackPosition == writePosition) {
+            base = ackPosition - DATA_START;
+        }
+        writeHeader();
+    }
+
+    /**
+     * 未送信のバイト数
+     */
+    public synchronized long getPendingBytes() {
+        return writePosition - ackPosition;
+    }
+
+    /**
+     * 追記に必要な空き容量を確保（必要に応じて未送信データを先頭に詰める）
+     */
+    private void ensureCapacity(long required) throws IOException {
+        if (physical(writePosition) + required <= capacity) {
+            return;
+        }
+
+        long pending = writePosition - ackPosition;
+        long reclaimable = physical(ackPosition) - DATA_START;
+        // コピー元とコピー先が重ならない場合のみ詰める（コピー中に停止しても元のデータが残る）
+        if (pending <= reclaimable && DATA_START + pending + required <= capacity) {
+            ByteBuffer source = buffer.duplicate();
+            source.position(physical(ackPosition));
+            source.limit(physical(writePosition));
+            ByteBuffer target = buffer.duplicate();
+            target.position(DATA_START);
+            target.put(source);
+            buffer.force();
+
+            base = ackPosition - DATA_START;
+            writeHeader();
+            logger.info("送信ジャーナルを圧縮しました（未送信 {}バイト）", pending);
+            return;
+        }
+
+        throw new IOException("送信ジャーナルの空き容量が不足しています（未送信 " + pending + "バイト, 容量 " + capacity + "バイト）");
+    }
+
+    private int physical(long position) {
+        return (int) (position - base);
+    }
+
+    private boolean loadHeader() {
+        long bestSeq = -1;
+        for (int slot = 0; slot < 2; slot++) {
+            int offset = slot * HEADER_SLOT_SIZE;
+            if (buffer.getLong(offset) != MAGIC) {
+                continue;
+            }
+            long seq = buffer.getLong(offset + 8);
+            long slotBase = buffer.getLong(offset + 16);
+            long slotWrite = buffer.getLong(offset + 24);
+            long slotAck = buffer.getLong(offset + 32);
+            if (buffer.getInt(offset + 40) != headerChecksum(seq, slotBase, slotWrite, slotAck) || seq <= bestSeq) {
+                continue;
+            }
+            bestSeq = seq;
+            headerSeq = seq;
+            base = slotBase;
+            writePosition = slotWrite;
+            ackPosition = slotAck;
+        }
+        return bestSeq >= 0;
+    }
+
+    private void writeHeader() {
+        headerSeq++;
+        int offset = (int) (headerSeq % 2) * HEADER_SLOT_SIZE;
+        buffer.putLong(offset, MAGIC);
+        buffer.putLong(offset + 8, headerSeq);
+        buffer.putLong(offset + 16, base);
+        buffer.putLong(offset + 24, writePosition);
+        buffer.putLong(offset + 32, ackPosition);
+        buffer.putInt(offset + 40, headerChecksum(headerSeq, base, writePosition, ackPosition));
+        if (forceOnAppend) {
+            buffer.force();
+        }
+    }
+
+    private int headerChecksum(long seq, long headerBase, long write, long ack) {
+        ByteBuffer bytes = ByteBuffer.allocate(32);
+        bytes.putLong(seq).putLong(headerBase).putLong(write).putLong(ack);
+        crc.reset();
+        crc.update(bytes.array(), 0, 32);
+        return (int) crc.getValue();
+    }
+
+    private int checksum(byte[] payload) {
+        crc.reset();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] encode(EquipmentStatus status) {
+        byte[] eqpId = status.getEqpId().getBytes(StandardCharsets.UTF_8);
+        byte[] state = status.getStatus() != null ? status.getStatus().getBytes(StandardCharsets.UTF_8) : null;
+        ByteBuffer bytes = ByteBuffer.allocate(8 + 2 + eqpId.length + 2 + (state != null ? state.length : 0) + 8);
+        bytes.putLong(status.getTimestampTime().getTime());
+        bytes.putShort((short) eqpId.length).put(eqpId);
+        if (state != null) {
+            bytes.putShort((short) state.length).put(state);
+        } else {
+            bytes.putShort((short) -1);
+        }
+        // 取得時刻は末尾に追加（この項目がない以前の形式のレコードも読み込める）
+        bytes.putLong(status.getFetchTime());
+        return bytes.array();
+    }
+
+    private static EquipmentStatus decode(byte[] payload) {
+        ByteBuffer bytes = ByteBuffer.wrap(payload);
+        Date timestamp = new Date(bytes.getLong());
+        byte[] eqpId = new byte[bytes.getShort()];
+        bytes.get(eqpId);
+        short stateLength = bytes.getShort();
+        String state = null;
+        if (stateLength >= 0) {
+            byte[] stateBytes = new byte[stateLength];
+            bytes.get(stateBytes);
+            state = new String(stateBytes, StandardCharsets.UTF_8);
+        }
+        EquipmentStatus status = new EquipmentStatus(new String(eqpId, StandardCharsets.UTF_8), state, timestamp);
+        if (bytes.remaining() >= 8) {
+            status.setFetchTime(bytes.getLong());
+        }
+        return status;
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            buffer.force();
+            channel.close();
+            randomAccessFile.close();
+            logger.info("送信ジャーナルをクローズしました: {} (未送信 {}バイト)", file.getAbsolutePath(),
+                    writePosition - ackPosition);
+        } catch (IOException e) {
+            logger.error("送信ジャーナルのクローズに失敗", e);
+        }
+    }
+
+    /**
+     * 読み出した未送信レコードと、送信後にackに渡す位置
+     */
+    public static class Batch {
+        private final List<EquipmentStatus> statusList;
+        private final long endPosition;
+
+        Batch(List<EquipmentStatus> statusList, long endPosition) {
+            this.statusList = statusList;
+            this.endPosition = endPosition;
+        }
+
+        public List<EquipmentStatus> getStatusList() {
+            return statusList;
+        }
+
+        public long getEndPosition() {
+            return endPosition;
+        }
+
+        public boolean isEmpty() {
+            return statusList.isEmpty();
+        }
+    }
+}
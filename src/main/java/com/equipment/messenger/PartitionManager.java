@@ -0,0 +1,278 @@
+package com.equipment.messenger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * EQPIDのハッシュによるパーティションの割り当て管理
+ * パーティションごとのリース（EQP_LEADER_LEASEの "<リース名>/P<番号>" 行）を保持しているインスタンスのみが
+ * そのパーティションの装置を処理する
+ *
+ * 各インスタンスはハートビートごとにメンバー行（"<リース名>/M/<インスタンスID>"）を更新して稼働中の
+ * インスタンス数を数え、担当数の目安 ceil(パーティション数 / インスタンス数) に合わせて
+ * 多すぎる分を解放し、不足分を空いている（期限切れの）パーティションから取得する。
+ * インスタンスの追加・停止時は、数回のハートビートで担当が再配分される
+ */
+public class PartitionManager implements Runnable, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(PartitionManager.class);
+
+    // 停止したインスタンスのメンバー行を削除するまでの時間
+    private static final long MEMBER_RETENTION_SECONDS = 3600;
+
+    private final DatabaseManager dbManager;
+    private final String leaseName;
+    private final String ownerId;
+    private final int partitionCount;
+    private final long leaseMs;
+    private final long heartbeatMs;
+    private final Consumer<Set<String>> onPartitionAcquired;
+    private final Thread thread;
+
+    // 保持しているパーティション → リースの状態
+    private final Map<Integer, OwnedPartition> owned = new ConcurrentHashMap<>();
+
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder releases = new LongAdder();
+    private final LongAdder losses = new LongAdder();
+    private final LongAdder heartbeatFailures = new LongAdder();
+
+    private volatile boolean running = true;
+    private boolean started;
+
+    /**
+     * @param onPartitionAcquired パーティションを新たに取得したときに（起動後の最初の取得を含む）、
+     *                            そのパーティションの処理を開始する前に、属する装置のEQPIDを渡して呼び出す処理
+     *                            （他のインスタンスが送信した状態との食い違いを防ぐため、重複抑止のキャッシュを破棄する。
+     *                            不要な場合はnull）
+     */
+    public PartitionManager(DatabaseManager dbManager, Config config, Consumer<Set<String>> onPartitionAcquired) {
+        this.dbManager = dbManager;
+        this.leaseName = config.getLeaderLeaseName();
+        this.ownerId = config.getInstanceId();
+        this.partitionCount = Math.max(1, config.getPartitionCount());
+        this.leaseMs = config.getLeaderLeaseMs();
+        this.heartbeatMs = Math.max(1, Math.min(config.getLeaderHeartbeatMs(), leaseMs / 2));
+        this.onPartitionAcquired = onPartitionAcquired;
+        this.thread = new Thread(this, "partition-lease");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * ハートビートを開始（初期化の再試行で複数回呼び出された場合は何もしない）
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        logger.info("パーティション管理を開始します - パーティション数: {}, インスタンス: {}, 有効期間: {}ms, ハートビート: {}ms",
+                partitionCount, ownerId, leaseMs, heartbeatMs);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            heartbeat();
+            try {
+                Thread.sleep(heartbeatMs);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * メンバー行と保持中のパーティションのリースを更新し、担当数を目安に合わせる
+     */
+    private void heartbeat() {
+        long startNanos = System.nanoTime();
+        long validUntilNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(leaseMs);
+        try {
+            dbManager.acquireOrRenewLease(memberLeaseName(), ownerId, leaseMs);
+            int members = Math.max(1, dbManager.countActiveLeases(leaseName + "/M/"));
+            int target = (partitionCount + members - 1) / members;
+
+            // 保持中のパーティションを更新
+            for (Integer partition : new ArrayList<>(owned.keySet())) {
+                LeaseState state = dbManager.acquireOrRenewLease(partitionLeaseName(partition), ownerId, leaseMs);
+                if (state.isAcquired()) {
+                    owned.put(partition, new OwnedPartition(state.getEpoch(), validUntilNanos));
+                } else {
+                    owned.remove(partition);
+                    losses.increment();
+                    logger.warn("パーティション{}の担当を失いました（現在の担当: {}）", partition, state.getOwnerId());
+                }
+            }
+
+            // 多すぎる分を解放（他のインスタンスが次のハートビートで取得する）
+            List<Integer> current = getOwnedPartitions();
+            for (int i = current.size() - 1; i >= 0 && owned.size() > target; i--) {
+                int partition = current.get(i);
+                owned.remove(partition);
+                dbManager.releaseLease(partitionLeaseName(partition), ownerId);
+                releases.increment();
+                logger.info("再配分のためパーティション{}を解放しました（稼働インスタンス数: {}）", partition, members);
+            }
+
+            // 不足分を空いているパーティションから取得（インスタンスごとに開始位置をずらして競合を減らす）
+            int offset = Math.floorMod(ownerId.hashCode(), partitionCount);
+            Map<Integer, OwnedPartition> acquired = new LinkedHashMap<>();
+            for (int i = 0; i < partitionCount && owned.size() + acquired.size() < target; i++) {
+                int partition = (offset + i) % partitionCount;
+                if (owned.containsKey(partition)) {
+                    continue;
+                }
+                LeaseState state = dbManager.acquireOrRenewLease(partitionLeaseName(partition), ownerId, leaseMs);
+                if (state.isAcquired()) {
+                    acquired.put(partition, new OwnedPartition(state.getEpoch(), validUntilNanos));
+                    logger.info("パーティション{}の担当になりました（EPOCH: {}、稼働インスタンス数: {}）",
+                            partition, state.getEpoch(), members);
+                }
+            }
+
+            if (!acquired.isEmpty()) {
+                // 保存済みの状態は停止中に他のインスタンスが送信した分を含まないため、起動後の最初の取得でも破棄する。
+                // 破棄に失敗した場合は担当に加えず、次のハートビートで（保持中のリースを更新して）再試行する
+                if (onPartitionAcquired != null) {
+                    Set<String> eqpIds = dbManager.getPartitionEquipmentIds(acquired.keySet(), partitionCount);
+                    onPartitionAcquired.accept(eqpIds);
+                    logger.info("パーティション{}の装置{}件の重複抑止キャッシュを破棄しました", acquired.keySet(), eqpIds.size());
+                }
+                owned.putAll(acquired);
+                acquisitions.add(acquired.size());
+                synchronized (this) {
+                    notifyAll();
+                }
+            }
+
+            dbManager.deleteExpiredLeases(leaseName + "/M/", MEMBER_RETENTION_SECONDS);
+        } catch (SQLException e) {
+            heartbeatFailures.increment();
+            logger.warn("パーティションのリースの更新に失敗しました: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 現在処理してよいパーティション（リースの有効期間内のもの）を昇順で取得
+     */
+    public List<Integer> getOwnedPartitions() {
+        long now = System.nanoTime();
+        List<Integer> partitions = new ArrayList<>();
+        for (Map.Entry<Integer, OwnedPartition> entry : owned.entrySet()) {
+            if (now - entry.getValue().validUntilNanos < 0) {
+                partitions.add(entry.getKey());
+            }
+        }
+        Collections.sort(partitions);
+        return partitions;
+    }
+
+    /**
+     * いずれかのパーティションの担当になるまで最大timeoutMs待機
+     *
+     * @return 担当のパーティションがある場合はtrue
+     */
+    public synchronized boolean awaitPartitions(long timeoutMs) throws InterruptedException {
+        if (getOwnedPartitions().isEmpty()) {
+            TimeUnit.MILLISECONDS.timedWait(this, timeoutMs);
+        }
+        return !getOwnedPartitions().isEmpty();
+    }
+
+    /**
+     * コミット直前に、DB上でもパーティションのリースを保持していることを確認（リース行をロックする）
+     *
+     * @param conn トランザクション用のConnection
+     * @return 保持している場合はtrue（falseの場合はロールバックすること）
+     */
+    public boolean verify(Connection conn, int partition) throws SQLException {
+        OwnedPartition state = owned.get(partition);
+        if (state == null || System.nanoTime() - state.validUntilNanos >= 0) {
+            return false;
+        }
+        return dbManager.verifyLease(conn, partitionLeaseName(partition), ownerId, state.epoch);
+    }
+
+    public int getPartitionCount() {
+        return partitionCount;
+    }
+
+    public long getHeartbeatMs() {
+        return heartbeatMs;
+    }
+
+    public String getOwnerId() {
+        return ownerId;
+    }
+
+    /**
+     * ログ出力用のサマリー文字列
+     */
+    public String summary() {
+        return String.format("担当パーティション %s / %d, 取得 %d回, 解放 %d回, 喪失 %d回, ハートビート失敗 %d回",
+                getOwnedPartitions(), partitionCount, acquisitions.sum(), releases.sum(), losses.sum(),
+                heartbeatFailures.sum());
+    }
+
+    private String partitionLeaseName(int partition) {
+        return leaseName + "/P" + partition;
+    }
+
+    private String memberLeaseName() {
+        return leaseName + "/M/" + ownerId;
+    }
+
+    /**
+     * ハートビートを停止し、保持しているパーティションとメンバー行を解放（他のインスタンスがすぐに引き継げるようにする）
+     */
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<Integer> partitions = new ArrayList<>(owned.keySet());
+        owned.clear();
+        try {
+            for (int partition : partitions) {
+                dbManager.releaseLease(partitionLeaseName(partition), ownerId);
+            }
+            dbManager.releaseLease(memberLeaseName(), ownerId);
+            logger.info("パーティションのリースを解放しました: {}", partitions);
+        } catch (SQLException e) {
+            logger.warn("パーティションのリースの解放に失敗しました（有効期間の経過後に引き継がれます）: {}", e.getMessage());
+        }
+        logger.info("パーティション統計: {}", summary());
+    }
+
+    /**
+     * 保持しているパーティションのリース
+     */
+    private static class OwnedPartition {
+        final long epoch;
+        final long validUntilNanos;
+
+        OwnedPartition(long epoch, long validUntilNanos) {
+            this.epoch = epoch;
+            this.validUntilNanos = validUntilNanos;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.equipment.messenger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 複数のパイプライン（装置ステータステーブル → キュー）を1つのプロセスで並行して実行
+ * パイプラインは app.pipelines で定義し、pipeline.<名前>.<キー> で設定を上書きする
+ *
+ * コネクションプールは全パイプラインで共有し、Artemis接続・送信ジャーナル・重複抑止などはパイプラインごとに持つ。
+ * 各パイプラインは専用スレッドで独立して実行するため、1つのパイプラインの初期化失敗や障害が
+ * 他のパイプラインの処理を止めることはない
+ */
+public class PipelineRunner {
+    private static final Logger logger = LoggerFactory.getLogger(PipelineRunner.class);
+
+    private final Config config;
+    private final List<String> pipelineNames;
+    // 停止要求（シャットダウンフック）から参照するため、スレッドセーフなリストを使用
+    private final List<EqpStatusMessenger> messengers = new CopyOnWriteArrayList<>();
+    private volatile boolean stopped;
+
+    public PipelineRunner(Config config) {
+        this.config = config;
+        this.pipelineNames = config.getPipelineNames();
+    }
+
+    /**
+     * 全パイプラインを開始し、すべてが終了するまで待機
+     */
+    public void run() throws InterruptedException {
+        logger.info("===== {}個のパイプラインを開始します: {} =====", pipelineNames.size(), pipelineNames);
+        checkDistinctTimestampTables();
+
+        // 共有プールは全パイプラインが同時に使用する接続数以上にする
+        int requiredConnections = 0;
+        for (String name : pipelineNames) {
+            requiredConnections += DatabaseManager.requiredConnections(config.forPipeline(name));
+        }
+        DatabaseManager sharedDbManager = new DatabaseManager(config, requiredConnections);
+        ExecutorService executor = Executors.newFixedThreadPool(pipelineNames.size());
+        MetricsHttpServer metricsServer = null;
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (String name : pipelineNames) {
+                Config pipelineConfig = config.forPipeline(name);
+                EqpStatusMessenger messenger;
+                try {
+                    messenger = new EqpStatusMessenger(pipelineConfig,
+                            new DatabaseManager(pipelineConfig, sharedDbManager));
+                } catch (Exception e) {
+                    logger.error("パイプライン {} の作成に失敗しました。このパイプラインは実行しません", name, e);
+                    continue;
+                }
+                messengers.add(messenger);
+                if (stopped) {
+                    messenger.stop();
+                }
+                futures.add(executor.submit(() -> runPipeline(name, pipelineConfig, messenger)));
+            }
+
+            // 全パイプラインのメトリクスを1つのエンドポイントで公開
+            if (config.isMetricsHttpEnabled()) {
+                List<MessengerMetrics> metrics = new ArrayList<>();
+                for (EqpStatusMessenger messenger : messengers) {
+                    metrics.add(messenger.getMetrics());
+                }
+                try {
+                    metricsServer = new MetricsHttpServer(config.getMetricsHttpPort(), metrics,
+                            sharedDbManager.getPoolMetrics());
+                    metricsServer.start();
+                } catch (IOException e) {
+                    logger.error("メトリクスのHTTP公開を開始できませんでした", e);
+                }
+            }
+
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    logger.error("パイプラインが異常終了しました", e.getCause());
+                }
+            }
+        } finally {
+            if (metricsServer != null) {
+                metricsServer.close();
+            }
+            executor.shutdownNow();
+            for (EqpStatusMessenger messenger : messengers) {
+                messenger.shutdown();
+            }
+            sharedDbManager.close();
+        }
+        logger.info("===== 全パイプラインが終了しました =====");
+    }
+
+    /**
+     * 全パイプラインの停止を要求（各パイプラインは実行中のサイクルの完了後に終了し、run()がクリーンアップする）
+     */
+    public void stop() {
+        stopped = true;
+        for (EqpStatusMessenger messenger : messengers) {
+            messenger.stop();
+        }
+    }
+
+    /**
+     * パイプラインごとにタイムスタンプテーブルが異なることを確認
+     * 同じテーブルを使用すると、行ロック（FOR UPDATE NOWAIT）で互いの処理を止め、
+     * 互いの処理済みタイムスタンプを上書きして送信漏れが発生するため、起動しない
+     *
+     * @throws IllegalStateException 複数のパイプラインが同じテーブルを使用する場合
+     */
+    private void checkDistinctTimestampTables() {
+        Map<String, String> tableOwners = new HashMap<>();
+        for (String name : pipelineNames) {
+            String table = config.forPipeline(name).getTimestampTableName().trim().toUpperCase(Locale.ROOT);
+            String other = tableOwners.putIfAbsent(table, name);
+            if (other != null) {
+                throw new IllegalStateException(String.format(
+                        "パイプライン %s と %s が同じタイムスタンプテーブル %s を使用しています。"
+                                + "pipeline.<名前>.db.timestamp.table でパイプラインごとに異なるテーブルを指定してください",
+                        other, name, table));
+            }
+        }
+    }
+
+    /**
+     * 1つのパイプラインを実行（初期化に失敗した場合は処理間隔ごとに再試行）
+     */
+    private void runPipeline(String name, Config pipelineConfig, EqpStatusMessenger messenger) {
+        // パイプライン名をスレッド名に含める（ログの [thread] で識別できるようにする）
+        Thread.currentThread().setName("pipeline-" + name);
+        logger.info("パイプライン {} を開始 - テーブル: {}, キュー: {}, タイムスタンプ: {}", name,
+                pipelineConfig.getEquipmentTableName(), pipelineConfig.getArtemisQueue(),
+                pipelineConfig.getTimestampTableName());
+        while (messenger.isRunning()) {
+            try {
+                messenger.initialize();
+                messenger.run();
+                return;
+            } catch (Exception e) {
+                int intervalSeconds = messenger.getTuning().current().getIntervalSeconds();
+                logger.error("パイプライン {} の初期化に失敗しました。{}秒後に再試行します", name, intervalSeconds, e);
+                try {
+                    messenger.pause(intervalSeconds * 1000L);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.equipment.messenger;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 固定間隔ポーリングによる変更検知
+ * 通知は行わず、指定された時間だけ待機する
+ */
+public class PollingChangeSource implements ChangeSource {
+
+    // 停止要求後は待機しない
+    private final CountDownLatch wokenUp = new CountDownLatch(1);
+
+    @Override
+    public void start() {
+        // 何もしない
+    }
+
+    @Override
+    public boolean awaitChange(long timeoutMs) throws InterruptedException {
+        wokenUp.await(timeoutMs, TimeUnit.MILLISECONDS);
+        return false;
+    }
+
+    @Override
+    public void wakeUp() {
+        wokenUp.countDown();
+    }
+
+    @Override
+    public void close() {
+        // 何もしない
+    }
+}
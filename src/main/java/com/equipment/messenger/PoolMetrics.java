@@ -0,0 +1,129 @@
+package com.equipment.messenger;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * コネクションプールのメトリクス
+ * 接続確立（ログオン）時間、プールからの取得時間、ステートメント準備時間を集計する
+ */
+public class PoolMetrics implements MetricsTrackerFactory {
+
+    private final LongAdder connectionsCreated = new LongAdder();
+    private final LongAdder connectionCreateMillis = new LongAdder();
+    private final LongAccumulator maxConnectionCreateMillis = new LongAccumulator(Math::max, 0);
+
+    private final LongAdder connectionsAcquired = new LongAdder();
+    private final LongAdder connectionAcquireNanos = new LongAdder();
+    private final LongAccumulator maxConnectionAcquireNanos = new LongAccumulator(Math::max, 0);
+
+    private final LongAdder connectionTimeouts = new LongAdder();
+
+    private final LongAdder statementsPrepared = new LongAdder();
+    private final LongAdder statementPrepareNanos = new LongAdder();
+    private final LongAccumulator maxStatementPrepareNanos = new LongAccumulator(Math::max, 0);
+
+    private volatile PoolStats poolStats;
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        this.poolStats = poolStats;
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+                connectionsCreated.increment();
+                connectionCreateMillis.add(connectionCreatedMillis);
+                maxConnectionCreateMillis.accumulate(connectionCreatedMillis);
+            }
+
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                connectionsAcquired.increment();
+                connectionAcquireNanos.add(elapsedAcquiredNanos);
+                maxConnectionAcquireNanos.accumulate(elapsedAcquiredNanos);
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                connectionTimeouts.increment();
+            }
+        };
+    }
+
+    /**
+     * ステートメント準備（prepareStatement）の所要時間を記録
+     */
+    public void recordStatementPrepareNanos(long elapsedNanos) {
+        statementsPrepared.increment();
+        statementPrepareNanos.add(elapsedNanos);
+        maxStatementPrepareNanos.accumulate(elapsedNanos);
+    }
+
+    public long getConnectionsCreated() {
+        return connectionsCreated.sum();
+    }
+
+    public long getConnectionCreateMillisTotal() {
+        return connectionCreateMillis.sum();
+    }
+
+    public long getConnectionsAcquired() {
+        return connectionsAcquired.sum();
+    }
+
+    public long getConnectionAcquireNanosTotal() {
+        return connectionAcquireNanos.sum();
+    }
+
+    public long getConnectionTimeouts() {
+        return connectionTimeouts.sum();
+    }
+
+    public long getStatementsPrepared() {
+        return statementsPrepared.sum();
+    }
+
+    public long getStatementPrepareNanosTotal() {
+        return statementPrepareNanos.sum();
+    }
+
+    public int getActiveConnections() {
+        PoolStats stats = poolStats;
+        return stats != null ? stats.getActiveConnections() : 0;
+    }
+
+    public int getIdleConnections() {
+        PoolStats stats = poolStats;
+        return stats != null ? stats.getIdleConnections() : 0;
+    }
+
+    /**
+     * ログ出力用のサマリー文字列
+     */
+    public String summary() {
+        return String.format(
+                "接続確立 %d回 (平均 %.1fms, 最大 %dms), 接続取得 %d回 (平均 %.3fms, 最大 %.3fms), " +
+                "取得タイムアウト %d回, ステートメント準備 %d回 (平均 %.3fms, 最大 %.3fms), 使用中 %d / アイドル %d",
+                getConnectionsCreated(), average(getConnectionCreateMillisTotal(), getConnectionsCreated()),
+                maxConnectionCreateMillis.get(),
+                getConnectionsAcquired(), nanosToMillis(average(getConnectionAcquireNanosTotal(), getConnectionsAcquired())),
+                nanosToMillis(maxConnectionAcquireNanos.get()),
+                getConnectionTimeouts(),
+                getStatementsPrepared(), nanosToMillis(average(getStatementPrepareNanosTotal(), getStatementsPrepared())),
+                nanosToMillis(maxStatementPrepareNanos.get()),
+                getActiveConnections(), getIdleConnections());
+    }
+
+    private static double average(long total, long count) {
+        return count == 0 ? 0.0 : (double) total / count;
+    }
+
+    private static double nanosToMillis(double nanos) {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,75 @@
+package com.equipment.messenger;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * signal()の呼び出しで待機中のメインループを起こす変更検知
+ * 処理中に届いた通知は保持され、次のawaitChangeは待機せずに戻る（通知の取りこぼしなし）
+ * 短時間に届いた複数の通知は1回のサイクルにまとめる
+ *
+ * DB側の通知を受けるサブクラスの基底クラスとして使用するほか、
+ * ローカル環境ではテーブル更新と同時にsignal()を呼び出すことで通知を模擬できる
+ */
+public class SignalChangeSource implements ChangeSource {
+
+    private final long minIntervalMs;
+    private final Object lock = new Object();
+    private boolean pending;
+    private long lastCycleNanos;
+
+    /**
+     * @param minIntervalMs サイクル開始の最小間隔（通知が集中した場合のDB負荷を抑える）
+     */
+    public SignalChangeSource(long minIntervalMs) {
+        this.minIntervalMs = minIntervalMs;
+    }
+
+    /**
+     * 変更を通知
+     */
+    public void signal() {
+        synchronized (lock) {
+            pending = true;
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    public void wakeUp() {
+        signal();
+    }
+
+    @Override
+    public void start() {
+        // 何もしない
+    }
+
+    @Override
+    public boolean awaitChange(long timeoutMs) throws InterruptedException {
+        boolean changed;
+        synchronized (lock) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+            long remainingNanos;
+            while (!pending && (remainingNanos = deadline - System.nanoTime()) > 0) {
+                TimeUnit.NANOSECONDS.timedWait(lock, remainingNanos);
+            }
+            changed = pending;
+            pending = false;
+        }
+
+        if (changed) {
+            // 前回のサイクル開始から最小間隔が経過するまで待機
+            long sinceLastMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastCycleNanos);
+            if (sinceLastMs < minIntervalMs) {
+                Thread.sleep(minIntervalMs - sinceLastMs);
+            }
+        }
+        lastCycleNanos = System.nanoTime();
+        return changed;
+    }
+
+    @Override
+    public void close() {
+        // 何もしない
+    }
+}
@@ -0,0 +1,207 @@
+package com.equipment.messenger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 複数の装置ステータスを1つのメッセージ本文（エンベロープ）にまとめる形式の符号化・復号
+ *
+ * スキーマ（バージョン1）:
+ * - binary: バージョン(byte) / 件数(int) / 件数分の [EQPID(UTF) / ステータスの有無(byte: 1=あり、0=NULL) /
+ *   ステータス(UTF、ありの場合のみ) / TIMESTAMPTIME(long) / 取得時刻(long)]
+ *   （数値はビッグエンディアン、文字列はDataOutput#writeUTF形式、時刻はエポックミリ秒、取得時刻は不明の場合0）
+ * - json: {"version":1,"records":[{"eqpId":"...","status":"...","timestamp":...,"fetchTime":...}]}（空白なし、UTF-8、
+ *   ステータスがNULLの場合は "status":null）
+ *
+ * 本文が閾値以上の場合はgzipで圧縮する。圧縮の有無・形式はメッセージプロパティでも示すが、
+ * 先頭バイト（gzip: 0x1f、binary: バージョン、json: '{'）で判別できる
+ *
+ * スレッドセーフではないため、送信スレッドごとに作成すること
+ */
+public class StatusEnvelopeCodec {
+
+    public static final int SCHEMA_VERSION = 1;
+
+    public static final String ENCODING_BINARY = "binary";
+    public static final String ENCODING_JSON = "json";
+    public static final String COMPRESSION_GZIP = "gzip";
+    public static final String COMPRESSION_NONE = "none";
+
+    private final boolean json;
+    private final int compressThresholdBytes;
+    // 符号化用のバッファ（メッセージごとに再利用する）
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(8192);
+    private final ByteArrayOutputStream compressed = new ByteArrayOutputStream(8192);
+    private boolean lastCompressed;
+
+    /**
+     * @param encoding binary または json
+     * @param compressThresholdBytes 本文をgzip圧縮する最小サイズ（バイト、負の値の場合は圧縮しない）
+     */
+    public StatusEnvelopeCodec(String encoding, int compressThresholdBytes) {
+        if (ENCODING_JSON.equals(encoding)) {
+            this.json = true;
+        } else if (ENCODING_BINARY.equals(encoding)) {
+            this.json = false;
+        } else {
+            throw new IllegalArgumentException("エンベロープの形式が不正です: " + encoding);
+        }
+        this.compressThresholdBytes = compressThresholdBytes;
+    }
+
+    /**
+     * statusList の from から to（含まない）までを1つの本文に符号化
+     */
+    public byte[] encode(List<EquipmentStatus> statusList, int from, int to) {
+        buffer.reset();
+        try {
+            if (json) {
+                writeJson(statusList, from, to);
+            } else {
+                writeBinary(statusList, from, to);
+            }
+            lastCompressed = compressThresholdBytes >= 0 && buffer.size() >= compressThresholdBytes;
+            if (!lastCompressed) {
+                return buffer.toByteArray();
+            }
+            compressed.reset();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed, 8192)) {
+                buffer.writeTo(gzip);
+            }
+            return compressed.toByteArray();
+        } catch (IOException e) {
+            // ByteArrayOutputStreamへの書き込みでは発生しない
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 直前に符号化した本文を圧縮したか
+     */
+    public boolean isLastCompressed() {
+        return lastCompressed;
+    }
+
+    public String getEncoding() {
+        return json ? ENCODING_JSON : ENCODING_BINARY;
+    }
+
+    private void writeBinary(List<EquipmentStatus> statusList, int from, int to) throws IOException {
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.writeByte(SCHEMA_VERSION);
+        out.writeInt(to - from);
+        for (int i = from; i < to; i++) {
+            EquipmentStatus status = statusList.get(i);
+            out.writeUTF(status.getEqpId());
+            // STATUSはNULL許容のため、有無のフラグを先に書き込む
+            if (status.getStatus() != null) {
+                out.writeBoolean(true);
+                out.writeUTF(status.getStatus());
+            } else {
+                out.writeBoolean(false);
+            }
+            out.writeLong(status.getTimestampTime().getTime());
+            out.writeLong(status.getFetchTime());
+        }
+        out.flush();
+    }
+
+    private void writeJson(List<EquipmentStatus> statusList, int from, int to) {
+        StringBuilder sb = new StringBuilder(64 + (to - from) * 80);
+        sb.append("{\"version\":").append(SCHEMA_VERSION).append(",\"records\":[");
+        for (int i = from; i < to; i++) {
+            EquipmentStatus status = statusList.get(i);
+            if (i > from) {
+                sb.append(',');
+            }
+            sb.append("{\"eqpId\":");
+            appendJsonString(sb, status.getEqpId());
+            sb.append(",\"status\":");
+            if (status.getStatus() != null) {
+                appendJsonString(sb, status.getStatus());
+            } else {
+                sb.append("null");
+            }
+            sb.append(",\"timestamp\":").append(status.getTimestampTime().getTime());
+            if (status.getFetchTime() > 0) {
+                sb.append(",\"fetchTime\":").append(status.getFetchTime());
+            }
+            sb.append('}');
+        }
+        sb.append("]}");
+        byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+        buffer.write(bytes, 0, bytes.length);
+    }
+
+    private static void appendJsonString(StringBuilder sb, String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+
+    /**
+     * binary形式の本文を復号（圧縮されている場合は展開する。受信側・検証用）
+     *
+     * @throws IOException binary形式でない場合、または未対応のバージョンの場合
+     */
+    public static List<EquipmentStatus> decode(byte[] body) throws IOException {
+        InputStream input = new ByteArrayInputStream(body);
+        if (body.length >= 2 && (body[0] & 0xff) == 0x1f && (body[1] & 0xff) == 0x8b) {
+            input = new GZIPInputStream(input);
+        }
+        try (DataInputStream in = new DataInputStream(input)) {
+            int version = in.readUnsignedByte();
+            if (version == '{') {
+                throw new IOException("json形式の本文は復号できません");
+            }
+            if (version != SCHEMA_VERSION) {
+                throw new IOException("未対応のエンベロープのバージョンです: " + version);
+            }
+            int count = in.readInt();
+            List<EquipmentStatus> statusList = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String eqpId = in.readUTF();
+                String state = in.readBoolean() ? in.readUTF() : null;
+                EquipmentStatus status = new EquipmentStatus(eqpId, state, new Date(in.readLong()));
+                status.setFetchTime(in.readLong());
+                statusList.add(status);
+            }
+            return statusList;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.equipment.messenger;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 装置ステータスメッセージの作成クラス
+ * JMSReplyTo用のDestinationとメッセージ本文をキャッシュし、メッセージごとの文字列連結と
+ * session.createQueue()の呼び出しを省略する
+ *
+ * スレッドセーフではないため、ArtemisMessengerの送信スレッドからのみ使用すること
+ */
+public class StatusMessageBuilder {
+
+    // ステータスの種類は少数のため固定上限で十分
+    private static final int MAX_CACHED_PAYLOADS = 256;
+
+    // レイテンシ計測用のメッセージプロパティ（いずれもエポックミリ秒）
+    public static final String PROPERTY_SOURCE_TIME = "EqpSourceTime";
+    public static final String PROPERTY_FETCH_TIME = "EqpFetchTime";
+    public static final String PROPERTY_SEND_TIME = "EqpSendTime";
+
+    // エンベロープ形式のメッセージプロパティ
+    public static final String PROPERTY_FORMAT = "EqpFormat";
+    public static final String PROPERTY_ENVELOPE_VERSION = "EqpEnvelopeVersion";
+    public static final String PROPERTY_ENVELOPE_ENCODING = "EqpEnvelopeEncoding";
+    public static final String PROPERTY_ENVELOPE_COMPRESSION = "EqpEnvelopeCompression";
+    public static final String PROPERTY_RECORD_COUNT = "EqpRecordCount";
+    public static final String FORMAT_ENVELOPE = "envelope";
+
+    // メッセージグループ（同じグループのメッセージは同じ受信者に順番に配信される）
+    public static final String PROPERTY_GROUP_ID = "JMSXGroupID";
+
+    private final Map<String, Queue> replyToCache;
+    private final Map<String, String> payloadCache;
+    private final boolean latencyProperties;
+    private final StatusEnvelopeCodec envelopeCodec;
+    private final EquipmentGrouping grouping;
+
+    /**
+     * @param maxCachedDestinations JMSReplyTo用のDestinationのキャッシュ件数
+     * @param latencyProperties trueの場合、レイテンシ計測用のプロパティ（TIMESTAMPTIME・取得時刻・送信時刻）を付与する
+     * @param envelopeCodec エンベロープ形式で送信する場合の符号化（従来の形式のみ使用する場合はnull）
+     * @param grouping JMSXGroupIDの割り当て（グループを使用しない場合はnull）
+     */
+    public StatusMessageBuilder(int maxCachedDestinations, boolean latencyProperties,
+                                StatusEnvelopeCodec envelopeCodec, EquipmentGrouping grouping) {
+        this.latencyProperties = latencyProperties;
+        this.envelopeCodec = envelopeCodec;
+        this.grouping = grouping;
+        this.replyToCache = new BoundedCache<>(Math.max(1, maxCachedDestinations));
+        this.payloadCache = new BoundedCache<>(MAX_CACHED_PAYLOADS);
+    }
+
+    /**
+     * 装置ステータスのメッセージを作成
+     * 本文: currentState="<ステータス>"、JMSReplyTo: EquipmentId=<装置ID>
+     * プロパティ（有効な場合）: EqpSourceTime=TIMESTAMPTIME、EqpFetchTime=DBからの取得時刻、EqpSendTime=送信時刻、
+     * JMSXGroupID=装置のグループ
+     */
+    public TextMessage build(Session session, EquipmentStatus status) throws JMSException {
+        TextMessage message = session.createTextMessage(payloadFor(status.getStatus()));
+        message.setJMSReplyTo(replyToFor(session, status.getEqpId()));
+        if (grouping != null) {
+            message.setStringProperty(PROPERTY_GROUP_ID, grouping.groupOf(status.getEqpId()));
+        }
+        if (latencyProperties) {
+            message.setLongProperty(PROPERTY_SOURCE_TIME, status.getTimestampTime().getTime());
+            if (status.getFetchTime() > 0) {
+                message.setLongProperty(PROPERTY_FETCH_TIME, status.getFetchTime());
+            }
+            message.setLongProperty(PROPERTY_SEND_TIME, System.currentTimeMillis());
+        }
+        return message;
+    }
+
+    /**
+     * 複数の装置ステータスを1つにまとめたエンベロープ形式のメッセージを作成（statusList の from から to まで）
+     * 本文: StatusEnvelopeCodecで符号化したバイト列（閾値以上はgzip圧縮）、JMSReplyToは設定しない
+     * プロパティ: EqpFormat=envelope、EqpEnvelopeVersion、EqpEnvelopeEncoding、EqpEnvelopeCompression、EqpRecordCount
+     * レイテンシ計測用のプロパティ（有効な場合）: EqpSourceTime・EqpFetchTimeはエンベロープ内で最も古い時刻
+     * グループを使用する場合は、同じグループの装置ステータスのみをまとめること（JMSXGroupIDは先頭の装置のグループ）
+     */
+    public BytesMessage buildEnvelope(Session session, List<EquipmentStatus> statusList, int from, int to)
+            throws JMSException {
+        if (envelopeCodec == null) {
+            throw new IllegalStateException("エンベロープ形式の符号化が設定されていません");
+        }
+        BytesMessage message = session.createBytesMessage();
+        message.writeBytes(envelopeCodec.encode(statusList, from, to));
+        message.setStringProperty(PROPERTY_FORMAT, FORMAT_ENVELOPE);
+        message.setIntProperty(PROPERTY_ENVELOPE_VERSION, StatusEnvelopeCodec.SCHEMA_VERSION);
+        message.setStringProperty(PROPERTY_ENVELOPE_ENCODING, envelopeCodec.getEncoding());
+        message.setStringProperty(PROPERTY_ENVELOPE_COMPRESSION, envelopeCodec.isLastCompressed()
+                ? StatusEnvelopeCodec.COMPRESSION_GZIP : StatusEnvelopeCodec.COMPRESSION_NONE);
+        message.setIntProperty(PROPERTY_RECORD_COUNT, to - from);
+        if (grouping != null) {
+            message.setStringProperty(PROPERTY_GROUP_ID, grouping.groupOf(statusList.get(from).getEqpId()));
+        }
+        if (latencyProperties) {
+            long oldestSource = Long.MAX_VALUE;
+            long oldestFetch = Long.MAX_VALUE;
+            for (int i = from; i < to; i++) {
+                EquipmentStatus status = statusList.get(i);
+                oldestSource = Math.min(oldestSource, status.getTimestampTime().getTime());
+                if (status.getFetchTime() > 0) {
+                    oldestFetch = Math.min(oldestFetch, status.getFetchTime());
+                }
+            }
+            message.setLongProperty(PROPERTY_SOURCE_TIME, oldestSource);
+            if (oldestFetch != Long.MAX_VALUE) {
+                message.setLongProperty(PROPERTY_FETCH_TIME, oldestFetch);
+            }
+            message.setLongProperty(PROPERTY_SEND_TIME, System.currentTimeMillis());
+        }
+        return message;
+    }
+
+    public boolean isEnvelopeEnabled() {
+        return envelopeCodec != null;
+    }
+
+    /**
+     * 本文を取得（キャッシュになければ作成）
+     */
+    private String payloadFor(String status) {
+        String payload = payloadCache.get(status);
+        if (payload == null) {
+            payload = "currentState=\"" + status + "\"";
+            payloadCache.put(status, payload);
+        }
+        return payload;
+    }
+
+    /**
+     * JMSReplyTo用のDestinationを取得（キャッシュになければ作成）
+     */
+    private Queue replyToFor(Session session, String eqpId) throws JMSException {
+        Queue replyTo = replyToCache.get(eqpId);
+        if (replyTo == null) {
+            replyTo = session.createQueue("EquipmentId=" + eqpId);
+            replyToCache.put(eqpId, replyTo);
+        }
+        return replyTo;
+    }
+
+    /**
+     * Destinationのキャッシュを破棄（再接続時に呼び出す）
+     */
+    public void invalidate() {
+        replyToCache.clear();
+    }
+
+    public int getCachedDestinationCount() {
+        return replyToCache.size();
+    }
+
+    /**
+     * 上限を超えると最も長く使用されていないエントリを削除するLRUキャッシュ
+     */
+    static class BoundedCache<K, V> extends LinkedHashMap<K, V> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxEntries;
+
+        BoundedCache(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > maxEntries;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.equipment.messenger;
+
+import javax.jms.JMSException;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 装置ステータスの送信先インターフェース
+ */
+public interface StatusSender {
+
+    /**
+     * 装置ステータスのリストを送信
+     * 戻った時点で全件が確定していること（ブローカーまたはローカルの送信ジャーナル）
+     */
+    void sendBatch(List<EquipmentStatus> statusList) throws JMSException, IOException;
+}
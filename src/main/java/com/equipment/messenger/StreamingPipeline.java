@@ -0,0 +1,152 @@
+package com.equipment.messenger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * ストリーミング処理パイプライン
+ * 取得ステージ（専用スレッドでResultSetを読み出す）と送信ステージ（呼び出し元スレッド）を
+ * 容量制限付きキューでつなぎ、取得と送信を並行して行う
+ * 全件をリストに保持しないため、未送信データの件数に関わらずメモリ使用量は一定
+ */
+public class StreamingPipeline implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(StreamingPipeline.class);
+
+    // 取得ステージの終了を示すマーカー
+    private static final EquipmentStatus END_OF_STREAM = new EquipmentStatus();
+
+    private static final long OFFER_TIMEOUT_MS = 100;
+
+    private final DatabaseManager dbManager;
+    private final StatusSender statusSender;
+    private final int queueCapacity;
+    private final LiveTuning tuning;
+    private final ExecutorService fetchExecutor;
+
+    /**
+     * @param tuning 送信のまとまり（バッチサイズ）の現在の値（実行中の変更は次のまとまりから反映）
+     */
+    public StreamingPipeline(DatabaseManager dbManager, StatusSender statusSender, Config config, LiveTuning tuning) {
+        this.dbManager = dbManager;
+        this.statusSender = statusSender;
+        this.queueCapacity = Math.max(1, config.getStreamingQueueCapacity());
+        this.tuning = tuning;
+        this.fetchExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "status-fetcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 前回のタイムスタンプ以降の装置ステータスを取得しながら送信
+     * 戻った時点で取得した全件の送信が完了している
+     *
+     * @param conn トランザクション用のConnection（処理中は取得ステージのみが使用する）
+     * @param lastTimestamp 前回のタイムスタンプ
+     * @return 送信件数と最大タイムスタンプ
+     */
+    public CycleResult process(Connection conn, Date lastTimestamp) throws Exception {
+        BlockingQueue<EquipmentStatus> queue = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+
+        Future<Integer> fetch = fetchExecutor.submit(() -> {
+            try {
+                return dbManager.streamUpdatedEquipmentStatus(conn, lastTimestamp,
+                        status -> enqueue(queue, status, cancelled));
+            } finally {
+                if (!cancelled.get()) {
+                    enqueue(queue, END_OF_STREAM, cancelled);
+                }
+            }
+        });
+
+        int sentCount = 0;
+        Date maxTimestamp = lastTimestamp;
+        List<EquipmentStatus> chunk = new ArrayList<>();
+
+        try {
+            boolean endOfStream = false;
+            while (!endOfStream) {
+                int sendChunkSize = Math.max(1, tuning.current().getBatchSize());
+                chunk.add(queue.take());
+                queue.drainTo(chunk, sendChunkSize - chunk.size());
+
+                // 終了マーカーは常に最後に投入されるため、含まれていれば末尾にある
+                if (chunk.get(chunk.size() - 1) == END_OF_STREAM) {
+                    chunk.remove(chunk.size() - 1);
+                    endOfStream = true;
+                }
+
+                if (!chunk.isEmpty()) {
+                    statusSender.sendBatch(chunk);
+                    for (EquipmentStatus status : chunk) {
+                        if (status.getTimestampTime().after(maxTimestamp)) {
+                            maxTimestamp = status.getTimestampTime();
+                        }
+                    }
+                    sentCount += chunk.size();
+                    chunk.clear();
+                }
+            }
+        } catch (Exception e) {
+            // 送信ステージの失敗時は取得ステージを停止させ、Connectionの使用終了を待つ
+            cancelled.set(true);
+            awaitQuietly(fetch);
+            throw e;
+        }
+
+        try {
+            int fetchedCount = fetch.get();
+            logger.debug("ストリーミング処理完了 - 取得: {}件, 送信: {}件", fetchedCount, sentCount);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+
+        return new CycleResult(sentCount, maxTimestamp);
+    }
+
+    /**
+     * キューに投入（送信ステージが停止した場合は中断）
+     */
+    private static void enqueue(BlockingQueue<EquipmentStatus> queue, EquipmentStatus status,
+                                AtomicBoolean cancelled) throws InterruptedException {
+        while (!queue.offer(status, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+            if (cancelled.get()) {
+                throw new InterruptedException("送信ステージが停止したため取得を中断します");
+            }
+        }
+    }
+
+    private static void awaitQuietly(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.debug("取得ステージの終了時のエラー（無視）: {}", e.getCause().getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        fetchExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,233 @@
+package com.equipment.messenger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.JMSException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 複数のArtemis接続（ストライプ）に装置ステータスを振り分けて並行送信する送信先
+ * EQPIDのハッシュ値でストライプを決めるため、同じ装置のメッセージは常に同じ接続・プロデューサーから
+ * 元の順序で送信され、異なる装置は別々の接続（TCP接続）で並行して送信される
+ *
+ * ストライプごとに独立した送信先（artemis.transport に応じてArtemisMessengerまたはCoreArtemisMessenger）を持つため、送信エラー時の再試行・再接続もストライプ単位で行い、
+ * 1つのストライプの応答遅延が他のストライプの送信を止めることはない
+ * ストライプ数が1の場合は呼び出し元スレッドでそのまま送信する
+ */
+public class StripedStatusSender implements StatusSender, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(StripedStatusSender.class);
+
+    private final List<ArtemisSender> stripes = new ArrayList<>();
+    private final LongAdder[] sentCounts;
+    private final LongAdder[] failureCounts;
+    private final ExecutorService executor;
+    private final MessengerMetrics metrics;
+
+    public StripedStatusSender(Config config) {
+        this(config, null);
+    }
+
+    /**
+     * @param metrics 送信の所要時間・件数、再試行・再接続の回数を記録するメトリクス（記録しない場合はnull）
+     */
+    public StripedStatusSender(Config config, MessengerMetrics metrics) {
+        this(config, metrics, new LiveTuning(config));
+    }
+
+    /**
+     * @param metrics 送信の所要時間・件数、再試行・再接続の回数を記録するメトリクス（記録しない場合はnull）
+     * @param tuning 全ストライプで共有する送信の設定値（バッチサイズ・再試行回数など）
+     */
+    public StripedStatusSender(Config config, MessengerMetrics metrics, LiveTuning tuning) {
+        this.metrics = metrics;
+        int stripeCount = Math.max(1, config.getArtemisProducerStripes());
+        this.sentCounts = new LongAdder[stripeCount];
+        this.failureCounts = new LongAdder[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes.add(createStripe(config, metrics, tuning));
+            sentCounts[i] = new LongAdder();
+            failureCounts[i] = new LongAdder();
+        }
+
+        if (stripeCount > 1) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(stripeCount, r -> {
+                Thread thread = new Thread(r, "artemis-stripe-" + threadNumber.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.executor = null;
+        }
+    }
+
+    /**
+     * artemis.transport に応じたストライプの送信先を作成
+     */
+    private static ArtemisSender createStripe(Config config, MessengerMetrics metrics, LiveTuning tuning) {
+        if ("core".equals(config.getArtemisTransport())) {
+            return new CoreArtemisMessenger(config, metrics, tuning);
+        }
+        return new ArtemisMessenger(config, metrics, tuning);
+    }
+
+    /**
+     * すべてのストライプの接続を初期化
+     */
+    public void initialize() throws JMSException {
+        try {
+            for (ArtemisSender stripe : stripes) {
+                stripe.initialize();
+            }
+        } catch (JMSException e) {
+            // 接続済みの接続を残さない（再試行時に接続し直すため）
+            for (ArtemisSender stripe : stripes) {
+                stripe.close();
+            }
+            throw e;
+        }
+        if (stripes.size() > 1) {
+            logger.info("ActiveMQ Artemisへの送信を{}本の接続に振り分けます", stripes.size());
+        }
+    }
+
+    /**
+     * 装置ステータスをストライプごとに分けて並行送信
+     * 戻った時点で全件がブローカーで確定している。いずれかのストライプが失敗した場合は、
+     * 他のストライプの送信完了を待ってから最初の例外を送出する（呼び出し側は全件を再送する）
+     */
+    @Override
+    public void sendBatch(List<EquipmentStatus> statusList) throws JMSException, IOException {
+        if (statusList.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        sendStriped(statusList);
+        if (metrics != null) {
+            metrics.recordDelivered(System.nanoTime() - start, statusList);
+        }
+    }
+
+    private void sendStriped(List<EquipmentStatus> statusList) throws JMSException, IOException {
+        if (executor == null) {
+            send(0, statusList);
+            return;
+        }
+
+        List<List<EquipmentStatus>> buckets = new ArrayList<>(stripes.size());
+        for (int i = 0; i < stripes.size(); i++) {
+            buckets.add(new ArrayList<>());
+        }
+        for (EquipmentStatus status : statusList) {
+            buckets.get(stripeOf(status.getEqpId())).add(status);
+        }
+
+        List<Future<?>> futures = new ArrayList<>(stripes.size());
+        for (int i = 0; i < stripes.size(); i++) {
+            List<EquipmentStatus> bucket = buckets.get(i);
+            if (bucket.isEmpty()) {
+                continue;
+            }
+            int stripe = i;
+            futures.add(executor.submit(() -> {
+                send(stripe, bucket);
+                return null;
+            }));
+        }
+
+        Exception failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                if (failure == null) {
+                    failure = (Exception) e.getCause();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("ストライプの送信完了待ちが中断されました", e);
+            }
+        }
+
+        if (failure instanceof JMSException) {
+            throw (JMSException) failure;
+        }
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure != null) {
+            throw new IOException(failure);
+        }
+    }
+
+    private void send(int stripe, List<EquipmentStatus> statusList) throws JMSException {
+        try {
+            stripes.get(stripe).sendBatch(statusList);
+            sentCounts[stripe].add(statusList.size());
+        } catch (JMSException | RuntimeException e) {
+            failureCounts[stripe].increment();
+            logger.error("ストライプ{}の送信に失敗しました（{}件）", stripe, statusList.size());
+            throw e;
+        }
+    }
+
+    /**
+     * 装置の送信に使用するストライプ番号
+     */
+    int stripeOf(String eqpId) {
+        return Math.floorMod(eqpId.hashCode(), stripes.size());
+    }
+
+    public int getStripeCount() {
+        return stripes.size();
+    }
+
+    /**
+     * ログ出力用のサマリー文字列（ストライプごとの送信件数と失敗回数）
+     */
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < stripes.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(String.format("ストライプ%d: 送信 %d件 / 失敗 %d回", i, sentCounts[i].sum(), failureCounts[i].sum()));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+            logger.info("ストライプ送信統計: {}", summary());
+        }
+        for (ArtemisSender stripe : stripes) {
+            stripe.close();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.equipment.messenger;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 再起動せずに変更できる性能関連の設定値（不変のスナップショット）
+ * 設定ファイルの変更やJMXからの変更時は新しいスナップショットを作成して差し替え（LiveTuning）、
+ * 処理側はサイクル・送信の開始時に取得したスナップショットの値を使用する
+ */
+public final class TuningParameters {
+
+    /**
+     * 再起動せずに反映できる設定キー
+     */
+    public static final Set<String> KEYS = Collections.unmodifiableSet(new TreeSet<>(Arrays.asList(
+            "app.interval.seconds", "app.lock.retry.seconds", "app.catchup.chunk.size",
+            "app.interval.adaptive.min.ms", "app.interval.adaptive.backlog.rows",
+            "db.fetch.size",
+            "artemis.batch.size", "artemis.send.max.retries", "artemis.retry.backoff.ms",
+            "artemis.async.window", "artemis.async.confirm.timeout.ms")));
+
+    private final int intervalSeconds;
+    private final int lockRetrySeconds;
+    private final int catchUpChunkSize;
+    private final long adaptiveIntervalMinMs;
+    private final int adaptiveIntervalBacklogRows;
+    private final int fetchSize;
+    private final int batchSize;
+    private final int sendMaxRetries;
+    private final long retryBackoffMs;
+    private final int asyncWindow;
+    private final long asyncConfirmTimeoutMs;
+
+    private TuningParameters(Config config) {
+        this.intervalSeconds = Math.max(0, config.getIntervalSeconds());
+        this.lockRetrySeconds = Math.max(0, config.getLockRetrySeconds());
+        this.catchUpChunkSize = Math.max(1, config.getCatchUpChunkSize());
+        this.adaptiveIntervalMinMs = Math.max(0, config.getAdaptiveIntervalMinMs());
+        this.adaptiveIntervalBacklogRows = Math.max(1, config.getAdaptiveIntervalBacklogRows());
+        this.fetchSize = Math.max(1, config.getDatabaseFetchSize());
+        this.batchSize = Math.max(1, config.getArtemisBatchSize());
+        this.sendMaxRetries = Math.max(1, config.getArtemisSendMaxRetries());
+        this.retryBackoffMs = Math.max(0, config.getArtemisRetryBackoffMs());
+        this.asyncWindow = Math.max(1, config.getArtemisAsyncWindow());
+        this.asyncConfirmTimeoutMs = Math.max(1, config.getArtemisAsyncConfirmTimeoutMs());
+    }
+
+    /**
+     * 設定からスナップショットを作成
+     *
+     * @throws NumberFormatException 数値として解釈できない値が含まれる場合
+     */
+    public static TuningParameters from(Config config) {
+        return new TuningParameters(config);
+    }
+
+    public int getIntervalSeconds() {
+        return intervalSeconds;
+    }
+
+    public long getIntervalMs() {
+        return intervalSeconds * 1000L;
+    }
+
+    public int getLockRetrySeconds() {
+        return lockRetrySeconds;
+    }
+
+    public int getCatchUpChunkSize() {
+        return catchUpChunkSize;
+    }
+
+    public long getAdaptiveIntervalMinMs() {
+        return adaptiveIntervalMinMs;
+    }
+
+    public int getAdaptiveIntervalBacklogRows() {
+        return adaptiveIntervalBacklogRows;
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getSendMaxRetries() {
+        return sendMaxRetries;
+    }
+
+    public long getRetryBackoffMs() {
+        return retryBackoffMs;
+    }
+
+    public int getAsyncWindow() {
+        return asyncWindow;
+    }
+
+    public long getAsyncConfirmTimeoutMs() {
+        return asyncConfirmTimeoutMs;
+    }
+
+    @Override
+    public String toString() {
+        return "処理間隔=" + intervalSeconds + "秒"
+                + ", ロック再試行間隔=" + lockRetrySeconds + "秒"
+                + ", キャッチアップ分割=" + catchUpChunkSize + "件"
+                + ", 適応間隔(最小=" + adaptiveIntervalMinMs + "ms, 滞留=" + adaptiveIntervalBacklogRows + "件)"
+                + ", フェッチサイズ=" + fetchSize
+                + ", バッチサイズ=" + batchSize
+                + ", 送信試行回数=" + sendMaxRetries
+                + ", 再接続待機=" + retryBackoffMs + "ms"
+                + ", 非同期ウィンドウ=" + asyncWindow
+                + ", 送信確認タイムアウト=" + asyncConfirmTimeoutMs + "ms";
+    }
+}
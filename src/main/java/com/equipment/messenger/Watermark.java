@@ -0,0 +1,37 @@
+package com.equipment.messenger;
+
+import java.util.Date;
+
+/**
+ * 処理済み位置を示す複合キー (TIMESTAMPTIME, EQPID)
+ * eqpIdがnullの場合は、timestampTimeの行をすべて処理済みであることを示す
+ */
+public class Watermark {
+    private final Date timestampTime;
+    private final String eqpId;
+
+    public Watermark(Date timestampTime, String eqpId) {
+        this.timestampTime = timestampTime;
+        this.eqpId = eqpId;
+    }
+
+    /**
+     * 指定された装置ステータスの位置を示すWatermarkを作成
+     */
+    public static Watermark of(EquipmentStatus status) {
+        return new Watermark(status.getTimestampTime(), status.getEqpId());
+    }
+
+    public Date getTimestampTime() {
+        return timestampTime;
+    }
+
+    public String getEqpId() {
+        return eqpId;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + timestampTime + ", " + eqpId + ")";
+    }
+}